@@ -0,0 +1,138 @@
+package util.graph.bench;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import util.graph.Graph;
+import util.graph.paths.AllPairsResult;
+import util.graph.paths.BlockedFloydWarshall;
+import util.graph.paths.CondensedFloydWarshall;
+import util.graph.paths.FloydWarshall;
+import util.graph.paths.OutOfCoreFloydWarshall;
+import util.graph.paths.ParallelFloydWarshall;
+import util.graph.paths.TiledDistances;
+import util.logging.Unit;
+
+/**
+ * All-pairs shortest paths with the variants of {@link FloydWarshall}: on a uniform random graph with size nodes and 4 size weighted edges, and on a chain of
+ * strongly connected components of 8 nodes, with 2 size edges between components.
+ * 
+ * <p>
+ * The out-of-core engine writes its tiles to a temporary directory, emptied after each run so that the next run starts over instead of resuming from the
+ * checkpoint.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+@State(Scope.Benchmark)
+public class AllPairsBenchmarks
+{
+	@Param({ "256", "1024" })
+	int				size;
+	
+	Graph			uniform		= null;
+	Graph			chained		= null;
+	File			directory	= null;
+	Unit			last		= null;
+	TiledDistances	tiles		= null;
+	
+	@Setup(Level.Trial)
+	public void setUp() throws IOException
+	{
+		uniform = new GraphGenerator(GraphGenerator.SEED).setMaxWeight(100).uniform(size, 4 * size);
+		chained = new GraphGenerator(GraphGenerator.SEED).setMaxWeight(100).chainedComponents(size, 8, 2 * size);
+		directory = Files.createTempDirectory("bench-tiles").toFile();
+	}
+	
+	@TearDown(Level.Trial)
+	public void tearDown()
+	{
+		directory.delete();
+	}
+	
+	/**
+	 * Exits the engine of the last run, and drops the tiles it wrote.
+	 */
+	@TearDown(Level.Invocation)
+	public void exitLast()
+	{
+		if(tiles != null)
+		{
+			tiles.close();
+			for(File file : directory.listFiles())
+				file.delete();
+		}
+		tiles = null;
+		if(last != null)
+			last.exit();
+		last = null;
+	}
+	
+	@Benchmark
+	public AllPairsResult floydWarshall()
+	{
+		FloydWarshall engine = new FloydWarshall(uniform);
+		last = engine;
+		return engine.compute();
+	}
+	
+	@Benchmark
+	public AllPairsResult blockedFloydWarshall()
+	{
+		FloydWarshall engine = new BlockedFloydWarshall(uniform);
+		last = engine;
+		return engine.compute();
+	}
+	
+	@Benchmark
+	public AllPairsResult parallelFloydWarshall()
+	{
+		FloydWarshall engine = new ParallelFloydWarshall(uniform);
+		last = engine;
+		return engine.compute();
+	}
+	
+	@Benchmark
+	public AllPairsResult chainedFloydWarshall()
+	{
+		FloydWarshall engine = new FloydWarshall(chained);
+		last = engine;
+		return engine.compute();
+	}
+	
+	@Benchmark
+	public AllPairsResult condensedFloydWarshall()
+	{
+		FloydWarshall engine = new CondensedFloydWarshall(chained);
+		last = engine;
+		return engine.compute();
+	}
+	
+	@Benchmark
+	public TiledDistances outOfCoreFloydWarshall() throws IOException
+	{
+		// tiles of a quarter of the matrix side, so that the 16 tiles go through all three phases
+		OutOfCoreFloydWarshall engine = new OutOfCoreFloydWarshall(new OutOfCoreFloydWarshall.OutOfCoreFloydWarshallConfig(uniform, directory).setTileSize(size / 4));
+		last = engine;
+		tiles = engine.compute();
+		return tiles;
+	}
+}
@@ -0,0 +1,34 @@
+package util.graph.bench;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.ChainedOptionsBuilder;
+import org.openjdk.jmh.runner.options.CommandLineOptionException;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Runs the benchmarks of the graph workloads with JMH, with the GC profiler unless other profilers are given, so that the allocation rate of each benchmark
+ * is reported next to its throughput.
+ * 
+ * <p>
+ * The arguments are those of <code>org.openjdk.jmh.Main</code>: a regular expression selects the benchmarks, <code>-p size=1000</code> restricts the sizes,
+ * <code>-f</code>, <code>-wi</code> and <code>-i</code> set the forks and iterations. The size of a benchmark is the number of nodes, except for the parsing
+ * of edge lists, where it is the number of edges.
+ * 
+ * <p>
+ * Usage, from the directory of this project once compiled to bin:
+ * <code>java -cp bin:../Floyd-Warshall/bin:../Floyd-Warshall/lib/log4j-1.2.16.jar:lib/* util.graph.bench.BenchmarkMain AllPairs</code>
+ */
+public class BenchmarkMain
+{
+	public static void main(String[] args) throws CommandLineOptionException, RunnerException
+	{
+		CommandLineOptions cmd = new CommandLineOptions(args);
+		ChainedOptionsBuilder options = new OptionsBuilder().parent(cmd);
+		if(cmd.getProfilers().isEmpty())
+			options.addProfiler(GCProfiler.class);
+		new Runner(options.build()).run();
+	}
+}
@@ -0,0 +1,147 @@
+package util.graph.bench;
+
+import java.util.Random;
+
+import util.graph.Edge;
+import util.graph.Graph;
+import util.graph.Node;
+
+/**
+ * Seeded generators of directed graphs for the benchmarks. The same seed and parameters always give the same graph (up to the iteration order of the sets of
+ * {@link Graph}).
+ * 
+ * <p>
+ * Edges carry one of a small number of labels, so that label interning is exercised, and optionally a random weight.
+ */
+public class GraphGenerator
+{
+	/**
+	 * The seed of the graphs of the benchmarks, so that all runs measure the same work.
+	 */
+	public static final long	SEED		= 20110330L;
+	public static final int		LABELS		= 8;
+	
+	protected Random			random		= null;
+	protected long				maxWeight	= 0;
+	
+	/**
+	 * @param seed
+	 *            : the seed of the generator
+	 */
+	public GraphGenerator(long seed)
+	{
+		random = new Random(seed);
+	}
+	
+	/**
+	 * @param max
+	 *            : if positive, edges get a random weight in [1, max]; otherwise they have the default weight.
+	 * @return the generator itself, for chained calls.
+	 */
+	public GraphGenerator setMaxWeight(long max)
+	{
+		maxWeight = max;
+		return this;
+	}
+	
+	/**
+	 * Uniform random graph: m edges between nodes chosen uniformly at random (Erdos-Renyi G(n, m), self loops and parallel edges allowed).
+	 */
+	public Graph uniform(int n, int m)
+	{
+		Graph g = new Graph();
+		Node[] nodes = addNodes(g, n);
+		for(int e = 0; e < m; e++)
+			addEdge(g, nodes[random.nextInt(n)], nodes[random.nextInt(n)]);
+		return g;
+	}
+	
+	/**
+	 * Scale-free graph (Barabasi-Albert preferential attachment): each new node links to k earlier nodes, chosen with a probability proportional to their
+	 * degree. The direction of each edge is chosen at random.
+	 */
+	public Graph scaleFree(int n, int k)
+	{
+		Graph g = new Graph();
+		Node[] nodes = addNodes(g, n);
+		int[] endpoints = new int[2 * n * k + 2];
+		int count = 0;
+		endpoints[count++] = 0;
+		for(int u = 1; u < n; u++)
+		{
+			int links = Math.min(k, u);
+			for(int l = 0; l < links; l++)
+			{
+				int v = endpoints[random.nextInt(count)];
+				if(random.nextBoolean())
+					addEdge(g, nodes[u], nodes[v]);
+				else
+					addEdge(g, nodes[v], nodes[u]);
+				endpoints[count++] = v;
+				endpoints[count++] = u;
+			}
+		}
+		return g;
+	}
+	
+	/**
+	 * Chain of small strongly connected components: the nodes are split into groups of the given size, each closed into a cycle, and m further edges go from
+	 * a random node to a random node of a later group, so that the groups are the strongly connected components of the graph.
+	 */
+	public Graph chainedComponents(int n, int size, int m)
+	{
+		Graph g = new Graph();
+		Node[] nodes = addNodes(g, n);
+		for(int first = 0; first < n; first += size)
+		{
+			int last = Math.min(n, first + size);
+			if(last - first > 1)
+				for(int u = first; u < last; u++)
+					addEdge(g, nodes[u], nodes[(u + 1 < last) ? u + 1 : first]);
+		}
+		int groups = (n + size - 1) / size;
+		for(int e = 0; (e < m) && (groups > 1); e++)
+		{
+			int from = random.nextInt(groups - 1);
+			int to = from + 1 + random.nextInt(groups - 1 - from);
+			addEdge(g, nodes[from * size + random.nextInt(size)], nodes[Math.min(n - 1, to * size + random.nextInt(size))]);
+		}
+		return g;
+	}
+	
+	/**
+	 * @return the graph as text, in the syntax read by {@link Graph#readFrom(java.io.InputStream)}, one edge per line.
+	 */
+	public static String toEdgeList(Graph g)
+	{
+		StringBuilder ret = new StringBuilder(g.m() * 16);
+		for(Edge e : g.getEdges())
+		{
+			ret.append(e.getFrom().getLabel()).append(" -");
+			if(e.getWeightedLabel() != null)
+				ret.append(e.getWeightedLabel());
+			ret.append("> ").append(e.getTo().getLabel()).append(";\n");
+		}
+		return ret.toString();
+	}
+	
+	protected Node[] addNodes(Graph g, int n)
+	{
+		Node[] nodes = new Node[n];
+		for(int u = 0; u < n; u++)
+		{
+			nodes[u] = new Node("n" + u);
+			g.addNode(nodes[u]);
+		}
+		return nodes;
+	}
+	
+	protected void addEdge(Graph g, Node from, Node to)
+	{
+		String label = "l" + random.nextInt(LABELS);
+		if(maxWeight > 0)
+			g.addEdge(new Edge(from, to, label, 1 + (long)(random.nextDouble() * maxWeight)));
+		else
+			g.addEdge(new Edge(from, to, label));
+	}
+}
@@ -0,0 +1,65 @@
+package util.graph.bench;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import util.graph.Edge;
+import util.graph.Graph;
+import util.graph.Node;
+
+/**
+ * Adjacency lookups on a scale-free graph with size nodes: the outgoing edges of every node, and the edge between the ends of every edge.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+@State(Scope.Benchmark)
+public class NodeBenchmarks
+{
+	@Param({ "1000", "100000" })
+	int		size;
+	
+	Node[]	nodes	= null;
+	Edge[]	edges	= null;
+	
+	@Setup(Level.Trial)
+	public void setUp()
+	{
+		Graph graph = new GraphGenerator(GraphGenerator.SEED).scaleFree(size, 4);
+		nodes = graph.getNodes().toArray(new Node[0]);
+		edges = graph.getEdges().toArray(new Edge[0]);
+	}
+	
+	@Benchmark
+	public long outList()
+	{
+		long ret = 0;
+		for(Node node : nodes)
+			ret += node.outList().size();
+		return ret;
+	}
+	
+	@Benchmark
+	public long getEdgeTo()
+	{
+		long ret = 0;
+		for(Edge edge : edges)
+			if(edge.getFrom().getEdgeTo(edge.getTo()) != null)
+				ret++;
+		return ret;
+	}
+}
@@ -0,0 +1,62 @@
+package util.graph.bench;
+
+import java.io.ByteArrayInputStream;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import util.graph.Graph;
+
+/**
+ * Parsing of edge lists with {@link Graph#readFrom(java.io.InputStream)}. The size is the number of edges, between size / 4 nodes.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+@State(Scope.Benchmark)
+public class ParseBenchmarks
+{
+	@Param({ "10000", "100000" })
+	int		size;
+	
+	byte[]	input	= null;
+	Graph	last	= null;
+	
+	@Setup(Level.Trial)
+	public void setUp()
+	{
+		input = GraphGenerator.toEdgeList(new GraphGenerator(GraphGenerator.SEED).setMaxWeight(100).uniform(size / 4, size)).getBytes();
+	}
+	
+	@Benchmark
+	public Graph readFrom()
+	{
+		last = Graph.readFrom(new ByteArrayInputStream(input));
+		return last;
+	}
+	
+	/**
+	 * Exits the graph, so that the logs do not accumulate over the run.
+	 */
+	@TearDown(Level.Invocation)
+	public void exitLast()
+	{
+		if(last != null)
+			last.exit();
+		last = null;
+	}
+}
@@ -0,0 +1,77 @@
+package util.graph.bench;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import util.graph.Graph;
+import util.graph.Node;
+import util.graph.paths.AllPairsResult;
+import util.graph.paths.FloydWarshall;
+import util.graph.paths.PathCursor;
+
+/**
+ * Reading the shortest paths from one node to all the nodes it reaches, out of the all-pairs result of a uniform random graph with size nodes and 4 size
+ * weighted edges: as lists, and with a {@link PathCursor}.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+@State(Scope.Benchmark)
+public class PathBenchmarks
+{
+	@Param({ "256", "1024" })
+	int				size;
+	
+	AllPairsResult	result	= null;
+	Node			source	= null;
+	List<Node>		targets	= null;
+	
+	@Setup(Level.Trial)
+	public void setUp()
+	{
+		Graph graph = new GraphGenerator(GraphGenerator.SEED).setMaxWeight(100).uniform(size, 4 * size);
+		FloydWarshall engine = new FloydWarshall(graph);
+		result = engine.compute();
+		engine.exit();
+		source = graph.getNodesNamed("n0").iterator().next();
+		targets = new ArrayList<Node>();
+		for(Node node : graph.getNodes())
+			if(result.isReachable(source, node))
+				targets.add(node);
+	}
+	
+	@Benchmark
+	public long list()
+	{
+		long ret = 0;
+		for(Node target : targets)
+			ret += result.path(source, target).size();
+		return ret;
+	}
+	
+	@Benchmark
+	public long walk()
+	{
+		long ret = 0;
+		for(Node target : targets)
+			for(PathCursor<Node> cursor = result.walk(source, target); cursor.hasNext(); cursor.next())
+				ret++;
+		return ret;
+	}
+}
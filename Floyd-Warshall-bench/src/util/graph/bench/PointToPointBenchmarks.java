@@ -0,0 +1,96 @@
+package util.graph.bench;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import util.graph.Graph;
+import util.graph.Node;
+import util.graph.paths.Dijkstra;
+import util.graph.paths.Direction;
+import util.graph.paths.PointToPoint;
+import util.graph.paths.SingleSourceResult;
+
+/**
+ * Shortest paths on a scale-free graph with size nodes and weighted edges: a single-source {@link Dijkstra}, and {@link PointToPoint} queries between
+ * {@link #PAIRS} pairs of nodes drawn at random.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+@State(Scope.Benchmark)
+public class PointToPointBenchmarks
+{
+	public static final int	PAIRS		= 64;
+	
+	@Param({ "10000", "100000" })
+	int						size;
+	
+	Dijkstra				dijkstra	= null;
+	PointToPoint			p2p			= null;
+	Node[]					from		= new Node[PAIRS];
+	Node[]					to			= new Node[PAIRS];
+	
+	@Setup(Level.Trial)
+	public void setUp()
+	{
+		Graph graph = new GraphGenerator(GraphGenerator.SEED).setMaxWeight(100).scaleFree(size, 3);
+		dijkstra = new Dijkstra(graph);
+		p2p = new PointToPoint(graph);
+		drawPairs(graph, from, to);
+	}
+	
+	@Benchmark
+	public SingleSourceResult dijkstra()
+	{
+		return dijkstra.compute(0, Direction.FORWARD);
+	}
+	
+	@Benchmark
+	public long bidirectionalBfs()
+	{
+		long ret = 0;
+		for(int k = 0; k < PAIRS; k++)
+			if(p2p.bfs(from[k], to[k], Direction.UNDIRECTED) != null)
+				ret++;
+		return ret;
+	}
+	
+	@Benchmark
+	public long bidirectionalDijkstra()
+	{
+		long ret = 0;
+		for(int k = 0; k < PAIRS; k++)
+			if(p2p.dijkstra(from[k], to[k], Direction.FORWARD) != null)
+				ret++;
+		return ret;
+	}
+	
+	/**
+	 * Fills the arrays with pairs of nodes of the graph drawn at random, with a fixed seed.
+	 */
+	static void drawPairs(Graph graph, Node[] sources, Node[] targets)
+	{
+		Node[] nodes = graph.getNodes().toArray(new Node[0]);
+		Random random = new Random(GraphGenerator.SEED);
+		for(int k = 0; k < sources.length; k++)
+		{
+			sources[k] = nodes[random.nextInt(nodes.length)];
+			targets[k] = nodes[random.nextInt(nodes.length)];
+		}
+	}
+}
@@ -0,0 +1,96 @@
+package util.graph.bench;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import util.graph.Graph;
+import util.graph.Node;
+import util.graph.paths.Direction;
+import util.graph.paths.PointToPoint;
+import util.graph.paths.ReachabilityIndex;
+
+/**
+ * Reachability queries between {@link PointToPointBenchmarks#PAIRS} pairs of nodes drawn at random on a scale-free graph with size nodes, answered by a
+ * bidirectional search or by a {@link ReachabilityIndex}; and the building of the index.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+@State(Scope.Benchmark)
+public class ReachabilityBenchmarks
+{
+	@Param({ "10000", "100000" })
+	int					size;
+	
+	Graph				graph	= null;
+	PointToPoint		p2p		= null;
+	ReachabilityIndex	index	= null;
+	ReachabilityIndex	last	= null;
+	Node[]				from	= new Node[PointToPointBenchmarks.PAIRS];
+	Node[]				to		= new Node[PointToPointBenchmarks.PAIRS];
+	
+	@Setup(Level.Trial)
+	public void setUp()
+	{
+		graph = new GraphGenerator(GraphGenerator.SEED).setMaxWeight(100).scaleFree(size, 3);
+		p2p = new PointToPoint(graph);
+		index = new ReachabilityIndex(graph);
+		PointToPointBenchmarks.drawPairs(graph, from, to);
+	}
+	
+	@TearDown(Level.Invocation)
+	public void exitLast()
+	{
+		if(last != null)
+			last.exit();
+		last = null;
+	}
+	
+	@TearDown(Level.Trial)
+	public void tearDown()
+	{
+		index.exit();
+	}
+	
+	@Benchmark
+	public long bidirectionalBfs()
+	{
+		long ret = 0;
+		for(int k = 0; k < from.length; k++)
+			if(p2p.bfs(from[k], to[k], Direction.FORWARD) != null)
+				ret++;
+		return ret;
+	}
+	
+	@Benchmark
+	public long reachabilityIndex()
+	{
+		long ret = 0;
+		for(int k = 0; k < from.length; k++)
+			if(index.reachable(from[k], to[k]))
+				ret++;
+		return ret;
+	}
+	
+	@Benchmark
+	public ReachabilityIndex buildIndex()
+	{
+		last = new ReachabilityIndex(graph);
+		return last;
+	}
+}
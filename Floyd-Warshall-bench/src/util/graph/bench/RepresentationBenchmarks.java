@@ -0,0 +1,118 @@
+package util.graph.bench;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import util.graph.Graph;
+import util.graph.representation.GraphRepresentation;
+import util.graph.representation.LinearGraphRepresentation;
+import util.graph.representation.RepresentationElement;
+import util.graph.representation.TextGraphRepresentation;
+import util.logging.Unit.UnitConfigData;
+
+/**
+ * The text representation of a scale-free graph with size nodes: reading it back, displaying it, and building the paths it is made of.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+@State(Scope.Benchmark)
+public class RepresentationBenchmarks
+{
+	/**
+	 * Exposes {@link LinearGraphRepresentation#buildPaths()} alone, without building any particular representation.
+	 * 
+	 * <p>
+	 * The fields of {@link LinearGraphRepresentation} are reset by their initializers after the constructor of {@link GraphRepresentation} has processed the
+	 * graph, so the graph is processed again before paths can be rebuilt.
+	 */
+	protected static class PathsOnly extends LinearGraphRepresentation
+	{
+		public PathsOnly(Graph g)
+		{
+			super(new LinearGraphRepresentation.GraphConfig(g));
+			update();
+		}
+		
+		public void rebuildPaths()
+		{
+			buildPaths();
+		}
+		
+		@Override
+		public RepresentationElement getRepresentation()
+		{
+			return null;
+		}
+		
+		@Override
+		public Object displayRepresentation()
+		{
+			return null;
+		}
+	}
+	
+	@Param({ "100", "1000" })
+	int						size;
+	
+	UnitConfigData			unitConfig	= new UnitConfigData().setName("bench.readRepresentation");
+	String					input		= null;
+	TextGraphRepresentation	repr		= null;
+	PathsOnly				paths		= null;
+	Graph					last		= null;
+	
+	@Setup(Level.Trial)
+	public void setUp()
+	{
+		Graph graph = new GraphGenerator(GraphGenerator.SEED).scaleFree(size, 2);
+		repr = new TextGraphRepresentation(new TextGraphRepresentation.GraphConfig(graph));
+		input = repr.displayRepresentation();
+		paths = new PathsOnly(graph);
+	}
+	
+	@Benchmark
+	public Graph readRepresentation()
+	{
+		last = TextGraphRepresentation.readRepresentation(input, null, unitConfig);
+		return last;
+	}
+	
+	@Benchmark
+	public String displayRepresentation()
+	{
+		return repr.displayRepresentation();
+	}
+	
+	@Benchmark
+	public PathsOnly buildPaths()
+	{
+		paths.rebuildPaths();
+		return paths;
+	}
+	
+	/**
+	 * Exits the representation read, so that the logs do not accumulate over the run.
+	 */
+	@TearDown(Level.Invocation)
+	public void exitLast()
+	{
+		if(last != null)
+			last.exit();
+		last = null;
+	}
+}
@@ -0,0 +1,106 @@
+package util.graph.bench;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import util.graph.Graph;
+import util.graph.paths.AllPairsResult;
+import util.graph.paths.BreadthFirstSearch;
+import util.graph.paths.Direction;
+import util.graph.paths.DistanceMatrix;
+import util.graph.paths.Johnson;
+import util.graph.paths.MultiSourceBfs;
+import util.graph.paths.TransitiveClosure;
+import util.graph.paths.TransitiveClosureResult;
+import util.logging.Unit;
+
+/**
+ * All-pairs computations meant for sparse graphs, with size nodes: breadth-first searches on a scale-free graph, one source at a time or many at once;
+ * {@link Johnson} on a uniform random graph with 3 size weighted edges; and the {@link TransitiveClosure} of a uniform random graph with 2 size edges.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+@State(Scope.Benchmark)
+public class SparseAllPairsBenchmarks
+{
+	@Param({ "1024", "4096" })
+	int					size;
+	
+	BreadthFirstSearch	bfs			= null;
+	MultiSourceBfs		msBfs		= null;
+	Graph				weighted	= null;
+	Graph				sparse		= null;
+	Unit				last		= null;
+	
+	@Setup(Level.Trial)
+	public void setUp()
+	{
+		Graph scaleFree = new GraphGenerator(GraphGenerator.SEED).scaleFree(size, 3);
+		bfs = new BreadthFirstSearch(scaleFree);
+		msBfs = new MultiSourceBfs(scaleFree);
+		weighted = new GraphGenerator(GraphGenerator.SEED).setMaxWeight(100).uniform(size, 3 * size);
+		sparse = new GraphGenerator(GraphGenerator.SEED).uniform(size, 2 * size);
+	}
+	
+	@TearDown(Level.Invocation)
+	public void exitLast()
+	{
+		if(last != null)
+			last.exit();
+		last = null;
+	}
+	
+	@Benchmark
+	public int[] repeatedBfs()
+	{
+		int n = bfs.getGraph().n();
+		int[] ret = new int[n * n];
+		for(int s = 0; s < n; s++)
+			System.arraycopy(bfs.distances(s, Direction.UNDIRECTED), 0, ret, s * n, n);
+		return ret;
+	}
+	
+	@Benchmark
+	public int[] multiSourceBfs()
+	{
+		return msBfs.allPairs(Direction.UNDIRECTED);
+	}
+	
+	@Benchmark
+	public DistanceMatrix multiSourceBfsMatrix()
+	{
+		return msBfs.allPairsMatrix(Direction.UNDIRECTED);
+	}
+	
+	@Benchmark
+	public AllPairsResult johnson()
+	{
+		Johnson engine = new Johnson(weighted);
+		last = engine;
+		return engine.compute();
+	}
+	
+	@Benchmark
+	public TransitiveClosureResult transitiveClosure()
+	{
+		TransitiveClosure engine = new TransitiveClosure(sparse);
+		last = engine;
+		return engine.compute();
+	}
+}
@@ -0,0 +1,62 @@
+package util.graph.bench;
+
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import util.graph.Graph;
+import util.graph.Node;
+import util.graph.paths.BreadthFirstSearch;
+import util.graph.paths.Direction;
+
+/**
+ * Undirected breadth-first searches from one node of a scale-free graph with size nodes: with {@link Graph#computeDistancesFromUndirected(Node)}, and with
+ * the direction-optimizing {@link BreadthFirstSearch} over node ids.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+@State(Scope.Benchmark)
+public class TraversalBenchmarks
+{
+	@Param({ "1000", "10000" })
+	int					size;
+	
+	Graph				graph	= null;
+	Node				source	= null;
+	BreadthFirstSearch	bfs		= null;
+	
+	@Setup(Level.Trial)
+	public void setUp()
+	{
+		graph = new GraphGenerator(GraphGenerator.SEED).scaleFree(size, 2);
+		source = graph.getNodesNamed("n0").iterator().next();
+		bfs = new BreadthFirstSearch(graph);
+	}
+	
+	@Benchmark
+	public Map<Node, Integer> distancesFromUndirected()
+	{
+		return graph.computeDistancesFromUndirected(source);
+	}
+	
+	@Benchmark
+	public int[] directionOptimizingBfs()
+	{
+		return bfs.distances(0, Direction.UNDIRECTED);
+	}
+}
@@ -0,0 +1,134 @@
+package util.graph;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import util.graph.paths.StronglyConnectedComponents;
+
+/**
+ * The condensation of a {@link Graph}: a new graph with a node per strongly connected component of the original one, and an edge from a component to another
+ * when some edge goes from a node of the first to a node of the second, with the weight of the lightest such edge. The condensation is acyclic.
+ * 
+ * <p>
+ * Components are numbered in a reverse topological order (see {@link StronglyConnectedComponents}): an edge of the condensation always goes from a component
+ * to one with a lower number. The node of component c is labeled <code>scc</code>c.
+ * 
+ * <p>
+ * The condensation is a snapshot: later changes to the original graph are not seen. Usage: <code>Condensation dag = graph.getCondensation();</code>
+ */
+public class Condensation
+{
+	protected Graph				original	= null;
+	protected Graph				graph		= null;
+	/**
+	 * The node of each component, by component number.
+	 */
+	protected Node[]			components	= null;
+	protected List<Set<Node>>	members		= null;
+	protected Map<Node, Integer>	numbers		= null;
+	
+	public Condensation(Graph theGraph)
+	{
+		if(theGraph == null)
+			throw new IllegalArgumentException("the graph cannot be null");
+		this.original = theGraph;
+		CsrGraph csr = new CsrGraph(theGraph);
+		StronglyConnectedComponents scc = new StronglyConnectedComponents(csr);
+		int count = scc.count();
+		
+		members = new ArrayList<Set<Node>>(count);
+		numbers = new HashMap<Node, Integer>(2 * csr.n());
+		for(int[] ids : scc.members())
+		{
+			Set<Node> set = new HashSet<Node>(2 * ids.length);
+			for(int u : ids)
+			{
+				set.add(csr.getNode(u));
+				numbers.put(csr.getNode(u), new Integer(members.size()));
+			}
+			members.add(Collections.unmodifiableSet(set));
+		}
+		
+		graph = new Graph();
+		components = new Node[count];
+		for(int c = 0; c < count; c++)
+		{
+			components[c] = new Node("scc" + c);
+			graph.addNode(components[c]);
+		}
+		CsrGraph dag = scc.condensation();
+		int[] offsets = dag.getOutOffsets();
+		for(int c = 0; c < count; c++)
+			for(int p = offsets[c]; p < offsets[c + 1]; p++)
+				graph.addEdge(new Edge(components[c], components[dag.getOutTargets()[p]], null, dag.getOutWeights()[p]));
+	}
+	
+	/**
+	 * @return the acyclic graph of the components.
+	 */
+	public Graph getGraph()
+	{
+		return graph;
+	}
+	
+	public Graph getOriginal()
+	{
+		return original;
+	}
+	
+	/**
+	 * @return the number of components.
+	 */
+	public int count()
+	{
+		return components.length;
+	}
+	
+	/**
+	 * @return the node of the condensation for the component with the given number.
+	 */
+	public Node getComponentNode(int component)
+	{
+		return components[component];
+	}
+	
+	/**
+	 * @return the number of the component of a node of the original graph.
+	 */
+	public int componentOf(Node node)
+	{
+		Integer ret = numbers.get(node);
+		if(ret == null)
+			throw new IllegalArgumentException("node " + node + " is not in graph");
+		return ret.intValue();
+	}
+	
+	/**
+	 * @return the node of the condensation for the component of a node of the original graph.
+	 */
+	public Node getComponentNode(Node node)
+	{
+		return components[componentOf(node)];
+	}
+	
+	/**
+	 * @return the nodes of the original graph in the component with the given number, as an unmodifiable set.
+	 */
+	public Set<Node> getMembers(int component)
+	{
+		return members.get(component);
+	}
+	
+	/**
+	 * @return the components, as unmodifiable sets of nodes of the original graph, by component number.
+	 */
+	public List<Set<Node>> getComponents()
+	{
+		return Collections.unmodifiableList(members);
+	}
+}
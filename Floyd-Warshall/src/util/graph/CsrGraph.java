@@ -0,0 +1,373 @@
+package util.graph;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Immutable snapshot of a {@link Graph} in compressed sparse row (CSR) form, for algorithms that read the graph many times and do not change it.
+ * 
+ * <p>
+ * Nodes have the dense ids of a {@link NodeIndex}. The out-edges of node u occupy the positions [outOffsets[u], outOffsets[u + 1]) of the parallel arrays
+ * outTargets, outWeights and outLabels; the position of an edge in these arrays is the id of the edge. The reverse (in-edge) form is kept the same way, with
+ * inEdgeIds giving, for each in-edge position, the id of the edge. Within a row, edges are sorted by the id of the other end.
+ * 
+ * <p>
+ * Node and edge labels are interned in a single string table; labels are referred to by their position in the table, with -1 for a <code>null</code> edge
+ * label.
+ * 
+ * <p>
+ * Only edges contained in the graph and whose both ends are contained in the graph are part of the snapshot. Changes to the graph after the snapshot was taken
+ * are not reflected.
+ * 
+ * <p>
+ * A snapshot may also be detached, i.e. built directly from arrays (for instance when loaded from a file), in which case there are no {@link Node} and
+ * {@link Edge} instances behind it and {@link #getNode(int)} and {@link #getEdge(int)} are not available.
+ */
+public class CsrGraph
+{
+	protected NodeIndex	index		= null;
+	protected Edge[]	edges		= null;
+	
+	protected int		n			= 0;
+	protected int		m			= 0;
+	
+	protected String[]	labels		= null;
+	protected int[]		nodeLabels	= null;
+	
+	protected int[]		outOffsets	= null;
+	protected int[]		outTargets	= null;
+	protected long[]	outWeights	= null;
+	protected int[]		outLabels	= null;
+	
+	protected int[]		inOffsets	= null;
+	protected int[]		inSources	= null;
+	protected long[]	inWeights	= null;
+	protected int[]		inLabels	= null;
+	protected int[]		inEdgeIds	= null;
+	
+	/**
+	 * Builds the snapshot of a graph.
+	 * 
+	 * @param graph
+	 *            : the graph
+	 */
+	public CsrGraph(Graph graph)
+	{
+		index = new NodeIndex(graph);
+		n = index.size();
+		
+		Map<String, Integer> table = new HashMap<String, Integer>();
+		List<String> tableList = new ArrayList<String>();
+		nodeLabels = new int[n];
+		for(int u = 0; u < n; u++)
+			nodeLabels[u] = intern(index.get(u).getLabel(), table, tableList);
+		
+		List<Edge> kept = new ArrayList<Edge>(graph.m());
+		for(Edge e : graph.getEdges())
+			if(index.contains(e.getFrom()) && index.contains(e.getTo()))
+				kept.add(e);
+		m = kept.size();
+		int[] from = new int[m];
+		int[] to = new int[m];
+		for(int e = 0; e < m; e++)
+		{
+			from[e] = index.idOf(kept.get(e).getFrom());
+			to[e] = index.idOf(kept.get(e).getTo());
+		}
+		
+		// counting sort by target, so that placing the edges in their source rows in this order leaves the rows sorted
+		int[] byTarget = new int[m];
+		int[] fill = new int[n + 1];
+		for(int e = 0; e < m; e++)
+			fill[to[e] + 1]++;
+		for(int u = 0; u < n; u++)
+			fill[u + 1] += fill[u];
+		for(int e = 0; e < m; e++)
+			byTarget[fill[to[e]]++] = e;
+		
+		outOffsets = new int[n + 1];
+		for(int e = 0; e < m; e++)
+			outOffsets[from[e] + 1]++;
+		for(int u = 0; u < n; u++)
+			outOffsets[u + 1] += outOffsets[u];
+		outTargets = new int[m];
+		outWeights = new long[m];
+		outLabels = new int[m];
+		edges = new Edge[m];
+		System.arraycopy(outOffsets, 0, fill, 0, n);
+		for(int k = 0; k < m; k++)
+		{
+			int e = byTarget[k];
+			int p = fill[from[e]]++;
+			Edge edge = kept.get(e);
+			outTargets[p] = to[e];
+			outWeights[p] = edge.getWeight();
+			outLabels[p] = (edge.getLabel() != null) ? intern(edge.getLabel(), table, tableList) : -1;
+			edges[p] = edge;
+		}
+		
+		labels = tableList.toArray(new String[tableList.size()]);
+		buildReverse();
+	}
+	
+	/**
+	 * Builds a detached snapshot from its forward form. The arrays are used as they are, not copied.
+	 * 
+	 * @param labelTable
+	 *            : the string table
+	 * @param nodeLabelIds
+	 *            : for each node, the position of its label in the table
+	 * @param offsets
+	 *            : the n + 1 row offsets
+	 * @param targets
+	 *            : the targets of the edges
+	 * @param weights
+	 *            : the weights of the edges
+	 * @param edgeLabelIds
+	 *            : for each edge, the position of its label in the table, or -1
+	 */
+	public CsrGraph(String[] labelTable, int[] nodeLabelIds, int[] offsets, int[] targets, long[] weights, int[] edgeLabelIds)
+	{
+		n = nodeLabelIds.length;
+		m = targets.length;
+		if((offsets.length != n + 1) || (offsets[n] != m) || (weights.length != m) || (edgeLabelIds.length != m))
+			throw new IllegalArgumentException("inconsistent CSR arrays");
+		labels = labelTable;
+		nodeLabels = nodeLabelIds;
+		outOffsets = offsets;
+		outTargets = targets;
+		outWeights = weights;
+		outLabels = edgeLabelIds;
+		buildReverse();
+	}
+	
+	/**
+	 * Builds a snapshot with the nodes and edges of another one, but other edge weights. All arrays except the weights are shared with the other snapshot.
+	 */
+	protected CsrGraph(CsrGraph other, long[] weights)
+	{
+		index = other.index;
+		edges = other.edges;
+		n = other.n;
+		m = other.m;
+		labels = other.labels;
+		nodeLabels = other.nodeLabels;
+		outOffsets = other.outOffsets;
+		outTargets = other.outTargets;
+		outWeights = weights;
+		outLabels = other.outLabels;
+		inOffsets = other.inOffsets;
+		inSources = other.inSources;
+		inLabels = other.inLabels;
+		inEdgeIds = other.inEdgeIds;
+		inWeights = new long[m];
+		for(int q = 0; q < m; q++)
+			inWeights[q] = outWeights[inEdgeIds[q]];
+	}
+	
+	/**
+	 * Reweights the edges with node potentials, as in Johnson's algorithm: the edge (u, v) of weight w gets the weight w + potential[u] - potential[v]. The
+	 * length of every path between two given nodes changes by the same amount, so shortest paths are preserved.
+	 * 
+	 * <p>
+	 * The new snapshot shares all arrays but the weights with this one, and maps to the same nodes and edges (whose own weights are unchanged).
+	 * 
+	 * @param potential
+	 *            : the potential of each node
+	 * @return the reweighted snapshot.
+	 */
+	public CsrGraph reweighted(long[] potential)
+	{
+		if(potential.length != n)
+			throw new IllegalArgumentException("potentials do not match the size of the graph");
+		long[] weights = new long[m];
+		for(int u = 0; u < n; u++)
+			for(int p = outOffsets[u]; p < outOffsets[u + 1]; p++)
+				weights[p] = outWeights[p] + potential[u] - potential[outTargets[p]];
+		return new CsrGraph(this, weights);
+	}
+	
+	private static int intern(String label, Map<String, Integer> table, List<String> tableList)
+	{
+		Integer id = table.get(label);
+		if(id == null)
+		{
+			id = new Integer(tableList.size());
+			table.put(label, id);
+			tableList.add(label);
+		}
+		return id.intValue();
+	}
+	
+	/**
+	 * Builds the reverse form from the forward form. Going through the forward rows in order leaves the reverse rows sorted by source.
+	 */
+	private void buildReverse()
+	{
+		inOffsets = new int[n + 1];
+		for(int p = 0; p < m; p++)
+			inOffsets[outTargets[p] + 1]++;
+		for(int u = 0; u < n; u++)
+			inOffsets[u + 1] += inOffsets[u];
+		inSources = new int[m];
+		inWeights = new long[m];
+		inLabels = new int[m];
+		inEdgeIds = new int[m];
+		int[] fill = new int[n];
+		System.arraycopy(inOffsets, 0, fill, 0, n);
+		for(int u = 0; u < n; u++)
+			for(int p = outOffsets[u]; p < outOffsets[u + 1]; p++)
+			{
+				int q = fill[outTargets[p]]++;
+				inSources[q] = u;
+				inWeights[q] = outWeights[p];
+				inLabels[q] = outLabels[p];
+				inEdgeIds[q] = p;
+			}
+	}
+	
+	public int n()
+	{
+		return n;
+	}
+	
+	public int m()
+	{
+		return m;
+	}
+	
+	/**
+	 * @return true if the snapshot was built from a {@link Graph}, and therefore nodes and edges can be mapped back to their instances.
+	 */
+	public boolean isAttached()
+	{
+		return index != null;
+	}
+	
+	/**
+	 * @return the index of the nodes; <code>null</code> for a detached snapshot.
+	 */
+	public NodeIndex getIndex()
+	{
+		return index;
+	}
+	
+	public Node getNode(int u)
+	{
+		if(index == null)
+			throw new IllegalStateException("detached snapshot");
+		return index.get(u);
+	}
+	
+	/**
+	 * @return the id of the node, or -1 if the node is not in the snapshot.
+	 */
+	public int idOf(Node node)
+	{
+		if(index == null)
+			throw new IllegalStateException("detached snapshot");
+		return index.idOf(node);
+	}
+	
+	/**
+	 * @param e
+	 *            : the id of the edge, i.e. its position in the forward arrays
+	 * @return the {@link Edge} instance
+	 */
+	public Edge getEdge(int e)
+	{
+		if(edges == null)
+			throw new IllegalStateException("detached snapshot");
+		return edges[e];
+	}
+	
+	public String getLabel(int labelId)
+	{
+		return (labelId >= 0) ? labels[labelId] : null;
+	}
+	
+	public String getNodeLabel(int u)
+	{
+		return labels[nodeLabels[u]];
+	}
+	
+	public int outDegree(int u)
+	{
+		return outOffsets[u + 1] - outOffsets[u];
+	}
+	
+	public int inDegree(int u)
+	{
+		return inOffsets[u + 1] - inOffsets[u];
+	}
+	
+	/**
+	 * @return true if any edge has a weight different from {@link Edge#DEFAULT_WEIGHT}.
+	 */
+	public boolean isWeighted()
+	{
+		for(int p = 0; p < m; p++)
+			if(outWeights[p] != Edge.DEFAULT_WEIGHT)
+				return true;
+		return false;
+	}
+	
+	// The arrays below are returned as they are, for use in tight loops; they must not be modified.
+	
+	public String[] getLabels()
+	{
+		return labels;
+	}
+	
+	public int[] getNodeLabels()
+	{
+		return nodeLabels;
+	}
+	
+	public int[] getOutOffsets()
+	{
+		return outOffsets;
+	}
+	
+	public int[] getOutTargets()
+	{
+		return outTargets;
+	}
+	
+	public long[] getOutWeights()
+	{
+		return outWeights;
+	}
+	
+	public int[] getOutLabels()
+	{
+		return outLabels;
+	}
+	
+	public int[] getInOffsets()
+	{
+		return inOffsets;
+	}
+	
+	public int[] getInSources()
+	{
+		return inSources;
+	}
+	
+	public long[] getInWeights()
+	{
+		return inWeights;
+	}
+	
+	public int[] getInLabels()
+	{
+		return inLabels;
+	}
+	
+	public int[] getInEdgeIds()
+	{
+		return inEdgeIds;
+	}
+}
@@ -3,9 +3,15 @@ package util.graph;
 
 public class Edge extends GraphComponent
 {
+	/**
+	 * The weight of edges for which no weight was given. With this weight, the length of a path is its number of edges.
+	 */
+	public static final long	DEFAULT_WEIGHT	= 1;
+	
 	protected String	label	= null; // FIXME: support null labels throughout the source
 	protected Node		from	= null;
 	protected Node		to		= null;
+	protected long		weight	= DEFAULT_WEIGHT;
 	
 	/**
 	 * Constructs a new edge. WARNING: this also changes the from and to nodes, by adding the newly constructed edge to their respective out and in lists.
@@ -18,10 +24,22 @@ public class Edge extends GraphComponent
 	 *            : the label of the edge
 	 */
 	public Edge(Node fromNode, Node toNode, String edgeLabel)
+	{
+		this(fromNode, toNode, edgeLabel, DEFAULT_WEIGHT);
+	}
+	
+	/**
+	 * Constructs a new weighted edge. The same warning applies as for {@link #Edge(Node, Node, String)}.
+	 * 
+	 * @param edgeWeight
+	 *            : the weight (cost) of the edge
+	 */
+	public Edge(Node fromNode, Node toNode, String edgeLabel, long edgeWeight)
 	{
 		this.from = fromNode;
 		this.to = toNode;
 		this.label = edgeLabel;
+		this.weight = edgeWeight;
 		if(this.to != null)
 			this.to.inEdges.add(this);
 		if(this.from != null)
@@ -33,6 +51,19 @@ public class Edge extends GraphComponent
 		return label;
 	}
 	
+	public long getWeight()
+	{
+		return weight;
+	}
+	
+	/**
+	 * @return true if the edge has a weight different from {@link #DEFAULT_WEIGHT}.
+	 */
+	public boolean isWeighted()
+	{
+		return weight != DEFAULT_WEIGHT;
+	}
+	
 	public Node getFrom()
 	{
 		return from;
@@ -69,6 +100,22 @@ public class Edge extends GraphComponent
 		return this;
 	}
 	
+	public Edge setWeight(long edgeWeight)
+	{
+		weight = edgeWeight;
+		return this;
+	}
+	
+	/**
+	 * @return the label of the edge, followed by the weight (as in <code>label:weight</code>) if the edge is weighted; <code>null</code> if the edge has neither.
+	 */
+	public String getWeightedLabel()
+	{
+		if(!isWeighted())
+			return label;
+		return (label != null ? label : "") + ":" + weight;
+	}
+	
 	@Override
 	public String toString()
 	{
@@ -82,7 +129,8 @@ public class Edge extends GraphComponent
 	
 	public String toStringShort(boolean isBackward)
 	{
-		return (isBackward ? "<" : "") + (this.label != null ? ("-" + this.label + "-") : "-") + (isBackward ? "" : ">");
+		String weightedLabel = getWeightedLabel();
+		return (isBackward ? "<" : "") + (weightedLabel != null ? ("-" + weightedLabel + "-") : "-") + (isBackward ? "" : ">");
 	}
 	
 }
\ No newline at end of file
@@ -1,21 +1,23 @@
 package util.graph;
 
 
+import java.io.IOException;
 import java.io.InputStream;
+import java.nio.charset.Charset;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
-import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
 import java.util.Queue;
-import java.util.Scanner;
 import java.util.Set;
 
-import core.interfaces.Logger;
-
+import util.graph.io.EdgeListParser;
+import util.graph.io.GraphBuilder;
+import util.graph.paths.StronglyConnectedComponents;
 import util.graph.representation.LinearGraphRepresentation;
 import util.logging.Unit;
 
@@ -30,7 +32,7 @@ import util.logging.Unit;
  * This class should only be used as a data structure. Visualization should happen elsewhere (for instance, in {@link LinearGraphRepresentation}.
  * 
  * <p>
- * Currently only supports adding of new nodes and edges.
+ * Changes made through the methods of the graph can be observed by registering a {@link GraphListener}.
  * 
  * <p>
  * Warning: if a graph contains the edge, id does not necessarily contain any of the nodes of the edge. It may be that the nodes have not been added to the
@@ -41,8 +43,36 @@ import util.logging.Unit;
  */
 public class Graph extends Unit
 {
-	protected Set<Node>	nodes	= null;
-	protected Set<Edge>	edges	= null;
+	/**
+	 * Receives the changes made to a graph through its methods (see {@link Graph#addListener(GraphListener)}). Each method is called after the change is
+	 * made, and only if the graph actually changed.
+	 */
+	public interface GraphListener
+	{
+		public void nodeAdded(Graph graph, Node node);
+		
+		public void nodeRemoved(Graph graph, Node node);
+		
+		public void edgeAdded(Graph graph, Edge edge);
+		
+		public void edgeRemoved(Graph graph, Edge edge);
+		
+		/**
+		 * Called by {@link Graph#setEdgeWeight(Edge, long)}.
+		 * 
+		 * @param oldWeight
+		 *            : the weight of the edge before the change
+		 */
+		public void edgeWeightChanged(Graph graph, Edge edge, long oldWeight);
+	}
+	
+	protected Set<Node>					nodes		= null;
+	protected Set<Edge>					edges		= null;
+	/**
+	 * Index of the nodes by label, kept up to date by {@link #addNode(Node)} and {@link #removeNode(Node)}.
+	 */
+	protected Map<String, Set<Node>>	nodesByName	= null;
+	protected List<GraphListener>		listeners	= null;
 	
 	/**
 	 * Generates an empty graph.
@@ -57,6 +87,28 @@ public class Graph extends Unit
 		super(unitConfig);
 		nodes = new HashSet<Node>();
 		edges = new HashSet<Edge>();
+		nodesByName = new HashMap<String, Set<Node>>();
+		listeners = new ArrayList<GraphListener>(1);
+	}
+	
+	/**
+	 * Registers a listener for the changes made to the graph through {@link #addNode(Node)}, {@link #removeNode(Node)}, {@link #addEdge(Edge)},
+	 * {@link #removeEdge(Edge)} and {@link #setEdgeWeight(Edge, long)}. Changes made directly to the nodes and edges are not seen.
+	 * 
+	 * @return the graph itself.
+	 */
+	public Graph addListener(GraphListener listener)
+	{
+		if(listener == null)
+			throw new IllegalArgumentException("null listener");
+		listeners.add(listener);
+		return this;
+	}
+	
+	public Graph removeListener(GraphListener listener)
+	{
+		listeners.remove(listener);
+		return this;
 	}
 	
 	public Graph addNode(Node node)
@@ -65,6 +117,18 @@ public class Graph extends Unit
 			throw new IllegalArgumentException("null nodes not allowed");
 		if(!nodes.add(node))
 			log.warn("node [" + node.toString() + "] already present.");
+		else
+		{
+			Set<Node> named = nodesByName.get(node.label);
+			if(named == null)
+			{
+				named = new HashSet<Node>(2);
+				nodesByName.put(node.label, named);
+			}
+			named.add(node);
+			for(GraphListener listener : listeners)
+				listener.nodeAdded(this, node);
+		}
 		return this;
 	}
 	
@@ -81,6 +145,9 @@ public class Graph extends Unit
 			throw new IllegalArgumentException("null edges not allowed");
 		if(!edges.add(edge))
 			log.warn("edge [" + edge.toString() + "] already present.");
+		else
+			for(GraphListener listener : listeners)
+				listener.edgeAdded(this, edge);
 		return this;
 	}
 	
@@ -88,6 +155,15 @@ public class Graph extends Unit
 	{
 		if(!nodes.remove(node))
 			log.warn("node[" + node + "] not contained");
+		else
+		{
+			Set<Node> named = nodesByName.get(node.label);
+			named.remove(node);
+			if(named.isEmpty())
+				nodesByName.remove(node.label);
+			for(GraphListener listener : listeners)
+				listener.nodeRemoved(this, node);
+		}
 		return this;
 	}
 	
@@ -95,6 +171,33 @@ public class Graph extends Unit
 	{
 		if(!edges.remove(edge))
 			log.warn("edge [" + edge + "] not contained");
+		else
+			for(GraphListener listener : listeners)
+				listener.edgeRemoved(this, edge);
+		return this;
+	}
+	
+	/**
+	 * Changes the weight of an edge of the graph, notifying the listeners. Changing the weight directly through {@link Edge#setWeight(long)} is not seen by
+	 * the listeners.
+	 * 
+	 * @param edge
+	 *            : the edge, which must be in the graph
+	 * @param weight
+	 *            : the new weight
+	 * @return the updated graph
+	 */
+	public Graph setEdgeWeight(Edge edge, long weight)
+	{
+		if(!edges.contains(edge))
+			throw new IllegalArgumentException("edge [" + edge + "] not contained");
+		long oldWeight = edge.getWeight();
+		if(oldWeight != weight)
+		{
+			edge.setWeight(weight);
+			for(GraphListener listener : listeners)
+				listener.edgeWeightChanged(this, edge, oldWeight);
+		}
 		return this;
 	}
 	
@@ -123,15 +226,25 @@ public class Graph extends Unit
 		return nodes.contains(node);
 	}
 	
+	/**
+	 * @param name
+	 *            : the label to look for
+	 * @return an unmodifiable view of the nodes in the graph with the given label (empty if there are none).
+	 */
 	public Collection<Node> getNodesNamed(String name)
 	{
-		Collection<Node> ret = new HashSet<Node>();
-		for(Node node : nodes)
-			if(node.label.equals(name))
-				ret.add(node);
-		return ret;
+		Set<Node> named = nodesByName.get(name);
+		if(named == null)
+			return Collections.emptySet();
+		return Collections.unmodifiableSet(named);
 	}
 	
+	/**
+	 * Warning: nodes should only be added and removed through {@link #addNode(Node)} and {@link #removeNode(Node)}, so that the index used by
+	 * {@link #getNodesNamed(String)} is kept up to date.
+	 * 
+	 * @return the nodes of the graph.
+	 */
 	public Collection<Node> getNodes()
 	{
 		return nodes;
@@ -154,37 +267,67 @@ public class Graph extends Unit
 		return true;
 	}
 	
-	protected Map<Node, Integer> computeDistancesFromUndirected(Node node)
+	/**
+	 * Finds the strongly connected components with an iterative Tarjan search over node ids (see {@link StronglyConnectedComponents}), which does not
+	 * recurse, so that long paths are safe.
+	 * 
+	 * @return the components, as unmodifiable sets of nodes, in a reverse topological order: a node only reaches nodes of its component and of the components
+	 *         before it.
+	 */
+	public List<Set<Node>> getStronglyConnectedComponents()
+	{
+		CsrGraph csr = new CsrGraph(this);
+		List<Set<Node>> ret = new ArrayList<Set<Node>>();
+		for(int[] ids : new StronglyConnectedComponents(csr).members())
+		{
+			Set<Node> component = new HashSet<Node>(2 * ids.length);
+			for(int u : ids)
+				component.add(csr.getNode(u));
+			ret.add(Collections.unmodifiableSet(component));
+		}
+		return ret;
+	}
+	
+	/**
+	 * @return a new acyclic graph with a node per strongly connected component, and the lightest edge between each pair of components joined by some edge.
+	 */
+	public Condensation getCondensation()
+	{
+		return new Condensation(this);
+	}
+	
+	/**
+	 * Counts the edges on a shortest path from the node to every node it is connected to, edges being followed both ways. A node is queued once, when it is
+	 * first reached, at which point its distance is final.
+	 * 
+	 * <p>
+	 * For repeated searches, or to follow edges in one direction only, {@link util.graph.paths.BreadthFirstSearch} works on node ids, without boxing.
+	 */
+	public Map<Node, Integer> computeDistancesFromUndirected(Node node)
 	{
 		if(!nodes.contains(node))
 			throw new IllegalArgumentException("node " + node + " is not in graph");
 		Map<Node, Integer> dists = new HashMap<Node, Integer>();
-		Queue<Node> grayNodes = new LinkedList<Node>();
-		Set<Node> blackNodes = new HashSet<Node>();
+		Queue<Node> grayNodes = new ArrayDeque<Node>();
 		grayNodes.add(node);
 		dists.put(node, new Integer(0));
 		
 		while(!grayNodes.isEmpty())
 		{
 			Node cNode = grayNodes.poll();
-			int dist = dists.get(cNode).intValue();
-			blackNodes.add(cNode);
+			Integer dist = new Integer(dists.get(cNode).intValue() + 1);
 			
 			for(Edge e : cNode.outEdges)
-				if(!blackNodes.contains(e.to))
+				if(!dists.containsKey(e.to))
 				{
-					if(!grayNodes.contains(e.to))
-						grayNodes.add(e.to);
-					if(!dists.containsKey(e.to) || (dists.get(e.to).intValue() > (dist + 1)))
-						dists.put(e.to, new Integer(dist + 1));
+					dists.put(e.to, dist);
+					grayNodes.add(e.to);
 				}
 			for(Edge e : cNode.inEdges)
-				if(!blackNodes.contains(e.from))
+				if(!dists.containsKey(e.from))
 				{
-					if(!grayNodes.contains(e.from))
-						grayNodes.add(e.from);
-					if(!dists.containsKey(e.from) || (dists.get(e.from).intValue() > (dist + 1)))
-						dists.put(e.from, new Integer(dist + 1));
+					dists.put(e.from, dist);
+					grayNodes.add(e.from);
 				}
 		}
 		
@@ -228,8 +371,8 @@ public class Graph extends Unit
 			ret += fromNode;
 			ret += " -> ";
 			ret += toNode;
-			if(edge.getLabel() != null)
-				ret += " [" + "label=\"" + edge.getLabel() + "\"]";
+			if(edge.getWeightedLabel() != null)
+				ret += " [" + "label=\"" + edge.getWeightedLabel() + "\"]";
 			ret += ";\n";
 		}
 		for(Node node : nodes)
@@ -249,83 +392,48 @@ public class Graph extends Unit
 	}
 	
 	public static Graph readFrom(InputStream input, UnitConfigData unitConfig)
+	{
+		return readFrom(input, unitConfig, Charset.defaultCharset());
+	}
+	
+	/**
+	 * Reads a graph from a text input. Edges are separated by ';' or by new lines. An edge is written as <code>A -label> B</code> (from A to B) or
+	 * <code>A -label- B</code> (both ways); the label is optional, as in <code>A -> B</code> or <code>A - B</code>. The label may be followed by a weight, as
+	 * in <code>A -label:3> B</code> or <code>A -:3> B</code>; edges without a weight have {@link Edge#DEFAULT_WEIGHT}. Only a number after the last ':' is a
+	 * weight, so <code>A -ratio:a:b> B</code> and <code>A -time:12:30> B</code> (a label ending in two numbers) are labels without a weight. Weights are longs:
+	 * <code>3.0</code> is read as 3, while a fractional weight such as <code>3.5</code> makes the edge corrupt (see {@link EdgeListParser}).
+	 * 
+	 * <p>
+	 * Corrupt edges are logged, with their line and column, and skipped. The input is closed at the end.
+	 * 
+	 * @param input
+	 *            : the input to read
+	 * @param unitConfig
+	 *            : the configuration of the new graph
+	 * @param charset
+	 *            : the charset of the input; it must encode the delimiters as ASCII does (see {@link EdgeListParser}).
+	 * @return the graph
+	 */
+	public static Graph readFrom(InputStream input, UnitConfigData unitConfig, Charset charset)
 	{
 		Graph g = new Graph(unitConfig);
-		Logger log = g.log;
-		Scanner scan = new Scanner(input);
-		while(scan.hasNextLine())
+		EdgeListParser parser = new EdgeListParser(charset);
+		try
+		{
+			parser.parse(input, new GraphBuilder(g, parser));
+		} catch(IOException e)
 		{
-			String line = scan.nextLine();
-			String edgeReads[] = line.split(";");
-			for(String edgeRead : edgeReads)
+			g.log.error("input could not be read: " + e);
+		} finally
+		{
+			try
 			{
-				log.trace("new edge: " + edgeRead);
-				
-				String[] parts1 = edgeRead.split("-", 2);
-				if(parts1.length < 2)
-				{
-					log.error("input corrupted");
-					continue;
-				}
-				String node1name = parts1[0].trim();
-				String node2name = null;
-				String edgeName = null;
-				boolean bidirectional = false;
-				String[] parts2 = parts1[1].split(">");
-				if((parts2.length < 1) || (parts2.length > 2))
-				{
-					log.error("input corrupted");
-					continue;
-				}
-				
-				Node node1 = null;
-				Node node2 = null;
-				
-				if(parts2.length == 2)
-				{
-					edgeName = parts2[0].trim();
-					node2name = parts2[1].trim();
-				}
-				else
-				{
-					bidirectional = true;
-					parts2 = parts1[1].split("-");
-					if(parts2.length == 2)
-					{
-						edgeName = parts2[0].trim();
-						node2name = parts2[1].trim();
-					}
-					else
-						node2name = parts2[0].trim();
-				}
-				if((edgeName != null) && (edgeName.length() == 0))
-					edgeName = null;
-				// log.trace("[" + parts1.toString() + "] [" + parts2.toString() + "]");
-				log.trace("[" + node1name + "] [" + node2name + "] [" + edgeName + "]");
-				
-				if(g.getNodesNamed(node1name).isEmpty())
-				{
-					node1 = new Node(node1name);
-					g.addNode(node1);
-				}
-				else
-					node1 = g.getNodesNamed(node1name).iterator().next();
-				
-				if(g.getNodesNamed(node2name).isEmpty())
-				{
-					node2 = new Node(node2name);
-					g.addNode(node2);
-				}
-				else
-					node2 = g.getNodesNamed(node2name).iterator().next();
-				
-				g.addEdge(new Edge(node1, node2, edgeName));
-				if(bidirectional)
-					g.addEdge(new Edge(node2, node1, edgeName));
+				input.close();
+			} catch(IOException e)
+			{
+				g.log.warn("input could not be closed: " + e);
 			}
 		}
-		scan.close();
-		
 		return g;
 	}
 }
\ No newline at end of file
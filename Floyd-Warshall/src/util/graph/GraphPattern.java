@@ -84,8 +84,8 @@ public class GraphPattern extends Graph
 		{
 			int maxIdx = 0;
 			NodeP lastEquiv = null;
-			for(Node n : this.nodes)
-				if((n.label.equals(node.label)) && (maxIdx <= ((NodeP)n).labelIndex))
+			for(Node n : getNodesNamed(node.label))
+				if(maxIdx <= ((NodeP)n).labelIndex)
 				{
 					maxIdx = ((NodeP)n).labelIndex;
 					lastEquiv = (NodeP)n;
@@ -0,0 +1,78 @@
+package util.graph;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Compacts the nodes of a {@link Graph} into dense integer ids, from 0 to n-1, so that algorithms can keep their per-node state in primitive arrays instead of
+ * maps.
+ *
+ * <p>
+ * Ids are assigned in the order given by {@link Node.NodeAlphaComparator}. The index is a snapshot: nodes added to or removed from the graph after the index
+ * was built are not reflected.
+ */
+public class NodeIndex
+{
+	protected Graph					graph	= null;
+	protected Node[]				nodes	= null;
+	protected Map<Node, Integer>	ids		= null;
+	
+	public NodeIndex(Graph theGraph)
+	{
+		if(theGraph == null)
+			throw new IllegalArgumentException("the graph cannot be null");
+		this.graph = theGraph;
+		
+		List<Node> sorted = new ArrayList<Node>(theGraph.getNodes());
+		Collections.sort(sorted, new Node.NodeAlphaComparator());
+		nodes = sorted.toArray(new Node[sorted.size()]);
+		ids = new HashMap<Node, Integer>(nodes.length * 2);
+		for(int i = 0; i < nodes.length; i++)
+			ids.put(nodes[i], new Integer(i));
+	}
+	
+	public Graph getGraph()
+	{
+		return graph;
+	}
+	
+	public int size()
+	{
+		return nodes.length;
+	}
+	
+	public Node get(int id)
+	{
+		return nodes[id];
+	}
+	
+	/**
+	 * @param node
+	 *            : the node to look up
+	 * @return the id of the node, or -1 if the node was not in the graph when the index was built.
+	 */
+	public int idOf(Node node)
+	{
+		Integer id = ids.get(node);
+		return (id != null) ? id.intValue() : -1;
+	}
+	
+	/**
+	 * Same as {@link #idOf(Node)}, but fails if the node is not indexed.
+	 */
+	public int requireId(Node node)
+	{
+		int id = idOf(node);
+		if(id < 0)
+			throw new IllegalArgumentException("node " + node + " is not in graph");
+		return id;
+	}
+	
+	public boolean contains(Node node)
+	{
+		return ids.containsKey(node);
+	}
+}
@@ -0,0 +1,319 @@
+package util.graph.io;
+
+import java.io.BufferedOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.Charset;
+import java.util.Arrays;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedInputStream;
+import java.util.zip.CheckedOutputStream;
+
+import util.graph.CsrGraph;
+import util.graph.Edge;
+import util.graph.Graph;
+import util.graph.Node;
+import util.logging.Unit.UnitConfigData;
+
+/**
+ * Compact binary format for graphs, much faster to save and load than the text produced by {@link Graph#toString()} and read by
+ * {@link Graph#readFrom(InputStream)}.
+ * 
+ * <p>
+ * Layout (all integers except the magic and the checksum are unsigned LEB128 varints; weights are zigzag-encoded first):
+ * <ul>
+ * <li>the magic bytes "FWGB", the format version (one byte) and the flags (one byte; bit 0 is set if the weights are stored);
+ * <li>the string table: the number of strings, then for each string the number of bytes and the UTF-8 bytes;
+ * <li>the number of nodes n, then for each node the position of its label in the string table;
+ * <li>the number of edges m, then for each node, in order: its out-degree, followed by its out-edges sorted by target, each as the difference to the previous
+ * target of the row (to the target 0 for the first edge), the position of the label in the string table plus 1 (0 for no label) and, if the weights are
+ * stored, the weight;
+ * <li>the CRC32 of all the preceding bytes, as four bytes, most significant first.
+ * </ul>
+ * 
+ * <p>
+ * Weights are only stored if some edge has a weight other than {@link Edge#DEFAULT_WEIGHT}. As with {@link CsrGraph}, only edges whose both ends are in the
+ * graph are saved.
+ * 
+ * <p>
+ * The counts of the header are not trusted when reading: the arrays grow as the strings, nodes and edges actually arrive, so a corrupted count ends in an
+ * {@link IOException} once the input runs out, not in a huge allocation.
+ */
+public class BinaryGraphFormat
+{
+	public static final byte[]	MAGIC			= { 'F', 'W', 'G', 'B' };
+	public static final int		VERSION			= 1;
+	
+	protected static final int	FLAG_WEIGHTED	= 1;
+	
+	/**
+	 * The number of elements allocated at first for a count read from the input.
+	 */
+	private static final int		CHUNK		= 1 << 16;
+	private static final Charset	UTF8		= Charset.forName("UTF-8");
+	
+	/**
+	 * Writes the graph. The output is flushed, but not closed.
+	 * 
+	 * @throws IOException
+	 *             if the output cannot be written.
+	 */
+	public static void write(Graph graph, OutputStream output) throws IOException
+	{
+		write(new CsrGraph(graph), output);
+	}
+	
+	/**
+	 * Writes the CSR snapshot. The output is flushed, but not closed.
+	 * 
+	 * @throws IOException
+	 *             if the output cannot be written.
+	 */
+	public static void write(CsrGraph csr, OutputStream output) throws IOException
+	{
+		CRC32 crc = new CRC32();
+		OutputStream out = new CheckedOutputStream(new BufferedOutputStream(output, 1 << 16), crc);
+		boolean weighted = csr.isWeighted();
+		
+		out.write(MAGIC);
+		out.write(VERSION);
+		out.write(weighted ? FLAG_WEIGHTED : 0);
+		
+		String[] labels = csr.getLabels();
+		writeVarint(out, labels.length);
+		for(String label : labels)
+		{
+			byte[] bytes = label.getBytes(UTF8);
+			writeVarint(out, bytes.length);
+			out.write(bytes);
+		}
+		
+		int n = csr.n();
+		int[] nodeLabels = csr.getNodeLabels();
+		writeVarint(out, n);
+		for(int u = 0; u < n; u++)
+			writeVarint(out, nodeLabels[u]);
+		
+		int[] offsets = csr.getOutOffsets();
+		int[] targets = csr.getOutTargets();
+		int[] edgeLabels = csr.getOutLabels();
+		long[] weights = csr.getOutWeights();
+		writeVarint(out, csr.m());
+		for(int u = 0; u < n; u++)
+		{
+			writeVarint(out, offsets[u + 1] - offsets[u]);
+			int previous = 0;
+			for(int p = offsets[u]; p < offsets[u + 1]; p++)
+			{
+				writeVarint(out, targets[p] - previous);
+				previous = targets[p];
+				writeVarint(out, edgeLabels[p] + 1);
+				if(weighted)
+					writeVarint(out, (weights[p] << 1) ^ (weights[p] >> 63));
+			}
+		}
+		
+		out.flush();
+		int checksum = (int)crc.getValue();
+		output.write(new byte[] { (byte)(checksum >>> 24), (byte)(checksum >>> 16), (byte)(checksum >>> 8), (byte)checksum });
+		output.flush();
+	}
+	
+	/**
+	 * Reads a graph directly into a (detached) CSR snapshot, without creating {@link Node} and {@link Edge} instances. Exactly the bytes of the graph are
+	 * read, so the input can be read on after it, and it is not closed; it is read a few bytes at a time, so an unbuffered input should be wrapped in a
+	 * {@link java.io.BufferedInputStream} by the caller.
+	 * 
+	 * @throws IOException
+	 *             if the input cannot be read, is not in this format, or is corrupted.
+	 */
+	public static CsrGraph readCsr(InputStream input) throws IOException
+	{
+		CRC32 crc = new CRC32();
+		InputStream checked = new CheckedInputStream(input, crc);
+		
+		byte[] magic = readBytes(checked, MAGIC.length);
+		for(int i = 0; i < MAGIC.length; i++)
+			if(magic[i] != MAGIC[i])
+				throw new IOException("not a binary graph");
+		int version = readByte(checked);
+		if(version != VERSION)
+			throw new IOException("unsupported binary graph version " + version);
+		boolean weighted = (readByte(checked) & FLAG_WEIGHTED) != 0;
+		
+		int labelCount = readCount(checked);
+		String[] labels = new String[Math.min(labelCount, CHUNK)];
+		for(int i = 0; i < labelCount; i++)
+		{
+			if(i == labels.length)
+				labels = Arrays.copyOf(labels, grow(labels.length, labelCount));
+			labels[i] = new String(readBytes(checked, readCount(checked)), UTF8);
+		}
+		
+		int n = readCount(checked);
+		if(n == Integer.MAX_VALUE)
+			throw new IOException("corrupted binary graph: too many nodes");
+		int[] nodeLabels = new int[Math.min(n, CHUNK)];
+		for(int u = 0; u < n; u++)
+		{
+			if(u == nodeLabels.length)
+				nodeLabels = Arrays.copyOf(nodeLabels, grow(nodeLabels.length, n));
+			nodeLabels[u] = readId(checked, labelCount);
+		}
+		
+		// the n nodes have been read, so n is backed by the input
+		int m = readCount(checked);
+		int[] offsets = new int[n + 1];
+		int[] targets = new int[Math.min(m, CHUNK)];
+		int[] edgeLabels = new int[targets.length];
+		long[] weights = new long[targets.length];
+		int p = 0;
+		for(int u = 0; u < n; u++)
+		{
+			int degree = readCount(checked);
+			if(degree > m - p)
+				throw new IOException("corrupted binary graph: too many edges");
+			int target = 0;
+			for(int k = 0; k < degree; k++, p++)
+			{
+				if(p == targets.length)
+				{
+					targets = Arrays.copyOf(targets, grow(targets.length, m));
+					edgeLabels = Arrays.copyOf(edgeLabels, targets.length);
+					weights = Arrays.copyOf(weights, targets.length);
+				}
+				target += readCount(checked);
+				if(target >= n)
+					throw new IOException("corrupted binary graph: edge target out of range");
+				targets[p] = target;
+				edgeLabels[p] = readId(checked, labelCount + 1) - 1;
+				if(weighted)
+				{
+					long zigzag = readVarint(checked);
+					weights[p] = (zigzag >>> 1) ^ -(zigzag & 1);
+				}
+				else
+					weights[p] = Edge.DEFAULT_WEIGHT;
+			}
+			offsets[u + 1] = p;
+		}
+		if(p != m)
+			throw new IOException("corrupted binary graph: too few edges");
+		
+		int expected = (int)crc.getValue();
+		byte[] stored = readBytes(input, 4);
+		int checksum = ((stored[0] & 0xFF) << 24) | ((stored[1] & 0xFF) << 16) | ((stored[2] & 0xFF) << 8) | (stored[3] & 0xFF);
+		if(checksum != expected)
+			throw new IOException("corrupted binary graph: checksum mismatch");
+		
+		return new CsrGraph(labels, nodeLabels, offsets, targets, weights, edgeLabels);
+	}
+	
+	/**
+	 * Reads a graph and rebuilds it as a {@link Graph}. The input is not closed.
+	 * 
+	 * @param unitConfig
+	 *            : the configuration of the new graph
+	 * @throws IOException
+	 *             if the input cannot be read, is not in this format, or is corrupted.
+	 */
+	public static Graph readGraph(InputStream input, UnitConfigData unitConfig) throws IOException
+	{
+		CsrGraph csr = readCsr(input);
+		Graph g = new Graph(unitConfig);
+		Node[] nodes = new Node[csr.n()];
+		for(int u = 0; u < nodes.length; u++)
+		{
+			nodes[u] = new Node(csr.getNodeLabel(u));
+			g.addNode(nodes[u]);
+		}
+		int[] offsets = csr.getOutOffsets();
+		int[] targets = csr.getOutTargets();
+		int[] edgeLabels = csr.getOutLabels();
+		long[] weights = csr.getOutWeights();
+		for(int u = 0; u < nodes.length; u++)
+			for(int p = offsets[u]; p < offsets[u + 1]; p++)
+				g.addEdge(new Edge(nodes[u], nodes[targets[p]], csr.getLabel(edgeLabels[p]), weights[p]));
+		return g;
+	}
+	
+	protected static void writeVarint(OutputStream out, long value) throws IOException
+	{
+		long v = value;
+		while((v & ~0x7FL) != 0)
+		{
+			out.write((int)((v & 0x7F) | 0x80));
+			v >>>= 7;
+		}
+		out.write((int)v);
+	}
+	
+	protected static long readVarint(InputStream in) throws IOException
+	{
+		long value = 0;
+		for(int shift = 0; shift < 64; shift += 7)
+		{
+			int b = readByte(in);
+			value |= (long)(b & 0x7F) << shift;
+			if((b & 0x80) == 0)
+				return value;
+		}
+		throw new IOException("corrupted binary graph: varint too long");
+	}
+	
+	/**
+	 * Reads a varint that must fit in a non-negative int.
+	 */
+	private static int readCount(InputStream in) throws IOException
+	{
+		long value = readVarint(in);
+		if((value < 0) || (value > Integer.MAX_VALUE))
+			throw new IOException("corrupted binary graph: count out of range");
+		return (int)value;
+	}
+	
+	/**
+	 * Reads a varint that must be smaller than the given bound.
+	 */
+	private static int readId(InputStream in, int bound) throws IOException
+	{
+		int value = readCount(in);
+		if(value >= bound)
+			throw new IOException("corrupted binary graph: id out of range");
+		return value;
+	}
+	
+	private static int readByte(InputStream in) throws IOException
+	{
+		int b = in.read();
+		if(b < 0)
+			throw new EOFException("truncated binary graph");
+		return b;
+	}
+	
+	/**
+	 * @return the new length of an array of the given length filled while reading count elements: twice as long, but not longer than count.
+	 */
+	private static int grow(int length, int count)
+	{
+		return (int)Math.min(count, 2L * length);
+	}
+	
+	private static byte[] readBytes(InputStream in, int count) throws IOException
+	{
+		byte[] ret = new byte[Math.min(count, CHUNK)];
+		int read = 0;
+		while(read < count)
+		{
+			if(read == ret.length)
+				ret = Arrays.copyOf(ret, grow(ret.length, count));
+			int r = in.read(ret, read, ret.length - read);
+			if(r < 0)
+				throw new EOFException("truncated binary graph");
+			read += r;
+		}
+		return ret;
+	}
+}
@@ -0,0 +1,483 @@
+package util.graph.io;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.util.Arrays;
+
+import util.graph.Edge;
+import util.graph.Graph;
+
+/**
+ * Single-pass tokenizer for the edge list syntax of {@link Graph#readFrom(InputStream)}, working directly on bytes.
+ * 
+ * <p>
+ * Statements are separated by ';' or by line ends. A statement is <code>A -label> B</code> (from A to B) or <code>A -label- B</code> (both ways), where the
+ * label is optional (<code>A -> B</code>, <code>A - B</code>) and may end in a weight (<code>A -label:3> B</code>). Blank statements are skipped.
+ * 
+ * <p>
+ * Only a number after the last ':' of the label is read as a weight; any other text stays in the label, as in <code>A -ratio:a:b> B</code>. A label that
+ * ends in two numbers, as in <code>A -time:12:30> B</code>, is kept whole as well, and has no weight. Weights are longs: a decimal weight is accepted if it
+ * is an integer (<code>A -label:3.0> B</code>), while a fractional one (<code>A -label:3.5> B</code>) or one out of the range of longs makes the statement
+ * corrupt.
+ * 
+ * <p>
+ * Node and edge labels are interned as they are read: each distinct label is decoded to a {@link String} only once, and is afterwards referred to by an int id
+ * (see {@link #getLabel(int)}). No other objects are created per statement.
+ * 
+ * <p>
+ * The delimiters are looked for as single bytes, so the charset must encode them as in ASCII (this is the case for UTF-8 and for the ISO-8859 family, for
+ * instance, but not for UTF-16).
+ * 
+ * <p>
+ * Corrupt statements are reported to the handler with their line and column (both 1-based; the column is counted in bytes) and are skipped.
+ * 
+ * <p>
+ * A parser instance keeps its label table and its position between calls, so that an input can be fed in consecutive buffers.
+ */
+public class EdgeListParser
+{
+	/**
+	 * Receives the statements read by the parser.
+	 */
+	public interface EdgeHandler
+	{
+		/**
+		 * @param fromLabel
+		 *            : label id of the source node
+		 * @param edgeLabel
+		 *            : label id of the edge, or -1 if the edge has no label
+		 * @param toLabel
+		 *            : label id of the destination node
+		 * @param weight
+		 *            : the weight of the edge
+		 * @param bidirectional
+		 *            : true if the edge goes both ways
+		 */
+		public void edge(int fromLabel, int edgeLabel, int toLabel, long weight, boolean bidirectional);
+		
+		public void error(long line, long column, String message);
+	}
+	
+	public static final int		DEFAULT_BUFFER_SIZE	= 1 << 16;
+	
+	private static final String	DELIMITERS			= ";->:\n\r \t";
+	
+	protected Charset			charset				= null;
+	
+	// the label table: open addressing over the hashes of the encoded labels; the encoded labels are kept back to back in a byte pool
+	protected int[]				slots				= new int[2048];	// pairs of (hash, label id + 1); id + 1 is 0 for an empty slot
+	protected int				labelCount			= 0;
+	protected int[]				labelOffsets		= new int[257];	// the bytes of label i are in [labelOffsets[i], labelOffsets[i + 1]) of the pool
+	protected byte[]			labelPool			= new byte[4096];
+	protected String[]			labelStrings		= new String[256];
+	
+	// the position in the input
+	protected long				offset				= 0;				// absolute offset of the first byte not yet consumed
+	protected long				line				= 1;
+	protected long				lineStart			= 0;				// absolute offset of the first byte of the current line
+	
+	/**
+	 * @param inputCharset
+	 *            : the charset of the input; it must encode the delimiters as in ASCII.
+	 */
+	public EdgeListParser(Charset inputCharset)
+	{
+		if(!Arrays.equals(DELIMITERS.getBytes(inputCharset), DELIMITERS.getBytes(Charset.forName("US-ASCII"))))
+			throw new IllegalArgumentException("charset " + inputCharset + " is not ASCII-compatible");
+		this.charset = inputCharset;
+	}
+	
+	public Charset getCharset()
+	{
+		return charset;
+	}
+	
+	public String getLabel(int labelId)
+	{
+		return (labelId >= 0) ? labelStrings[labelId] : null;
+	}
+	
+	public int getLabelCount()
+	{
+		return labelCount;
+	}
+	
+	/**
+	 * @return the number of line ends consumed so far.
+	 */
+	public long getLineCount()
+	{
+		return line - 1;
+	}
+	
+	/**
+	 * @return the number of bytes consumed since the last line end (or since the beginning, if there was none).
+	 */
+	public long getColumnOffset()
+	{
+		return offset - lineStart;
+	}
+	
+	/**
+	 * Reads the whole stream, in buffers of {@link #DEFAULT_BUFFER_SIZE} bytes (larger if a statement does not fit).
+	 * 
+	 * @param input
+	 *            : the input; it is not closed.
+	 * @param handler
+	 *            : the handler of the statements
+	 * @throws IOException
+	 *             if the input cannot be read.
+	 */
+	public void parse(InputStream input, EdgeHandler handler) throws IOException
+	{
+		byte[] array = new byte[DEFAULT_BUFFER_SIZE];
+		ByteBuffer buffer = ByteBuffer.wrap(array);
+		buffer.limit(0);
+		while(true)
+		{
+			buffer.compact();
+			if(!buffer.hasRemaining())
+			{ // a single statement fills the buffer
+				array = Arrays.copyOf(array, array.length * 2);
+				int position = buffer.position();
+				buffer = ByteBuffer.wrap(array);
+				buffer.position(position);
+			}
+			int read = input.read(array, buffer.position(), buffer.remaining());
+			if(read < 0)
+			{
+				buffer.flip();
+				parse(buffer, true, handler);
+				return;
+			}
+			buffer.position(buffer.position() + read);
+			buffer.flip();
+			parse(buffer, false, handler);
+		}
+	}
+	
+	/**
+	 * Parses the statements between the position and the limit of the buffer. Unless this is the end of the input, the last statement is only parsed if it is
+	 * terminated; on return, the position of the buffer is at the beginning of the first statement that was not parsed.
+	 * 
+	 * @param buffer
+	 *            : the input
+	 * @param endOfInput
+	 *            : true if no more input follows the contents of the buffer
+	 * @param handler
+	 *            : the handler of the statements
+	 */
+	public void parse(ByteBuffer buffer, boolean endOfInput, EdgeHandler handler)
+	{
+		int base = buffer.position();
+		int limit = buffer.limit();
+		long delta = offset - base; // converts positions in the buffer to absolute offsets
+		int start = base;
+		for(int i = base; i < limit; i++)
+		{
+			byte b = buffer.get(i);
+			if((b == ';') || (b == '\n') || (b == '\r'))
+			{
+				statement(buffer, start, i, delta, handler);
+				if(b == '\n')
+				{
+					line++;
+					lineStart = delta + i + 1;
+				}
+				start = i + 1;
+			}
+		}
+		if(endOfInput && (start < limit))
+		{
+			statement(buffer, start, limit, delta, handler);
+			start = limit;
+		}
+		offset = delta + start;
+		buffer.position(start);
+	}
+	
+	/**
+	 * Parses one statement, in [start, end) of the buffer.
+	 */
+	protected void statement(ByteBuffer buffer, int start, int end, long delta, EdgeHandler handler)
+	{
+		int s = trimStart(buffer, start, end);
+		int e = trimEnd(buffer, s, end);
+		if(s == e)
+			return;
+		int dash = indexOf(buffer, (byte)'-', s, e);
+		if(dash < 0)
+		{
+			error(handler, delta + s, "missing '-'");
+			return;
+		}
+		int labelEnd, toStart;
+		boolean bidirectional;
+		int arrow = indexOf(buffer, (byte)'>', dash + 1, e);
+		if(arrow >= 0)
+		{
+			int other = indexOf(buffer, (byte)'>', arrow + 1, e);
+			if(other >= 0)
+			{
+				error(handler, delta + other, "unexpected '>'");
+				return;
+			}
+			bidirectional = false;
+			labelEnd = arrow;
+			toStart = arrow + 1;
+		}
+		else
+		{
+			bidirectional = true;
+			int dash2 = indexOf(buffer, (byte)'-', dash + 1, e);
+			if(dash2 < 0)
+				labelEnd = toStart = dash + 1;
+			else
+			{
+				int other = indexOf(buffer, (byte)'-', dash2 + 1, e);
+				if(other >= 0)
+				{
+					error(handler, delta + other, "unexpected '-'");
+					return;
+				}
+				labelEnd = dash2;
+				toStart = dash2 + 1;
+			}
+		}
+		
+		int fromEnd = trimEnd(buffer, s, dash);
+		if(fromEnd == s)
+		{
+			error(handler, delta + s, "missing source node");
+			return;
+		}
+		int toS = trimStart(buffer, toStart, e);
+		if(toS == e)
+		{
+			error(handler, delta + e, "missing destination node");
+			return;
+		}
+		
+		// edge label, possibly followed by :weight
+		int labelS = trimStart(buffer, dash + 1, labelEnd);
+		int labelE = trimEnd(buffer, labelS, labelEnd);
+		long weight = Edge.DEFAULT_WEIGHT;
+		int colon = lastIndexOf(buffer, (byte)':', labelS, labelE);
+		int weightS = (colon < 0) ? labelE : trimStart(buffer, colon + 1, labelE);
+		if((colon >= 0) && isNumber(buffer, weightS, labelE) && !endsInNumber(buffer, labelS, trimEnd(buffer, labelS, colon)))
+		{
+			int point = indexOf(buffer, (byte)'.', weightS, labelE);
+			int integerEnd = (point < 0) ? labelE : point;
+			for(int i = integerEnd + 1; i < labelE; i++)
+				if(buffer.get(i) != '0')
+				{
+					error(handler, delta + weightS, "fractional weight; weights are integers");
+					return;
+				}
+			if(!isInteger(buffer, weightS, integerEnd))
+			{
+				error(handler, delta + weightS, "weight out of the range of long");
+				return;
+			}
+			weight = parseInteger(buffer, weightS, integerEnd);
+			labelE = trimEnd(buffer, labelS, colon);
+		}
+		
+		int from = intern(buffer, s, fromEnd);
+		int label = (labelS < labelE) ? intern(buffer, labelS, labelE) : -1;
+		int to = intern(buffer, toS, e);
+		handler.edge(from, label, to, weight, bidirectional);
+	}
+	
+	protected void error(EdgeHandler handler, long position, String message)
+	{
+		handler.error(line, position - lineStart + 1, message);
+	}
+	
+	/**
+	 * @return the id of the label in [start, end) of the buffer, adding it to the table if new.
+	 */
+	protected int intern(ByteBuffer buffer, int start, int end)
+	{
+		int len = end - start;
+		int hash = 0;
+		for(int i = start; i < end; i++)
+			hash = 31 * hash + buffer.get(i);
+		int mask = (slots.length >> 1) - 1;
+		for(int slot = mix(hash) & mask;; slot = (slot + 1) & mask)
+		{
+			int id = slots[2 * slot + 1] - 1;
+			if(id < 0)
+				return addLabel(buffer, start, len, hash, slot);
+			if((slots[2 * slot] == hash) && equal(buffer, start, len, labelOffsets[id], labelOffsets[id + 1]))
+				return id;
+		}
+	}
+	
+	private int addLabel(ByteBuffer buffer, int start, int len, int hash, int slot)
+	{
+		if(labelCount == labelStrings.length)
+		{
+			labelStrings = Arrays.copyOf(labelStrings, labelCount * 2);
+			labelOffsets = Arrays.copyOf(labelOffsets, labelCount * 2 + 1);
+		}
+		int poolStart = labelOffsets[labelCount];
+		if(poolStart + len > labelPool.length)
+			labelPool = Arrays.copyOf(labelPool, Math.max(poolStart + len, labelPool.length * 2));
+		for(int i = 0; i < len; i++)
+			labelPool[poolStart + i] = buffer.get(start + i);
+		int id = labelCount++;
+		labelOffsets[labelCount] = poolStart + len;
+		labelStrings[id] = new String(labelPool, poolStart, len, charset);
+		slots[2 * slot] = hash;
+		slots[2 * slot + 1] = id + 1;
+		if(labelCount * 4 > slots.length)
+			rehash();
+		return id;
+	}
+	
+	private void rehash()
+	{
+		int[] old = slots;
+		slots = new int[old.length * 2];
+		int mask = (slots.length >> 1) - 1;
+		for(int k = 0; k < old.length; k += 2)
+			if(old[k + 1] != 0)
+			{
+				int slot = mix(old[k]) & mask;
+				while(slots[2 * slot + 1] != 0)
+					slot = (slot + 1) & mask;
+				slots[2 * slot] = old[k];
+				slots[2 * slot + 1] = old[k + 1];
+			}
+	}
+	
+	private static int mix(int hash)
+	{
+		int h = hash * 0x9E3779B9;
+		return h ^ (h >>> 16);
+	}
+	
+	private boolean equal(ByteBuffer buffer, int start, int len, int poolStart, int poolEnd)
+	{
+		if(poolEnd - poolStart != len)
+			return false;
+		for(int i = 0; i < len; i++)
+			if(labelPool[poolStart + i] != buffer.get(start + i))
+				return false;
+		return true;
+	}
+	
+	private static boolean isSpace(byte b)
+	{
+		return (b >= 0) && (b <= ' ');
+	}
+	
+	private static int trimStart(ByteBuffer buffer, int start, int end)
+	{
+		int i = start;
+		while((i < end) && isSpace(buffer.get(i)))
+			i++;
+		return i;
+	}
+	
+	private static int trimEnd(ByteBuffer buffer, int start, int end)
+	{
+		int i = end;
+		while((i > start) && isSpace(buffer.get(i - 1)))
+			i--;
+		return i;
+	}
+	
+	private static int indexOf(ByteBuffer buffer, byte b, int start, int end)
+	{
+		for(int i = start; i < end; i++)
+			if(buffer.get(i) == b)
+				return i;
+		return -1;
+	}
+	
+	private static int lastIndexOf(ByteBuffer buffer, byte b, int start, int end)
+	{
+		for(int i = end - 1; i >= start; i--)
+			if(buffer.get(i) == b)
+				return i;
+		return -1;
+	}
+	
+	/**
+	 * @return true if [start, end) holds an optionally signed decimal number, with digits before and, if there is a '.', after the point.
+	 */
+	private static boolean isNumber(ByteBuffer buffer, int start, int end)
+	{
+		int i = start;
+		if((i < end) && ((buffer.get(i) == '-') || (buffer.get(i) == '+')))
+			i++;
+		int digits = 0;
+		while((i < end) && (buffer.get(i) >= '0') && (buffer.get(i) <= '9'))
+		{
+			i++;
+			digits++;
+		}
+		if(digits == 0)
+			return false;
+		if(i == end)
+			return true;
+		if((buffer.get(i) != '.') || (i + 1 == end))
+			return false;
+		for(i++; i < end; i++)
+			if((buffer.get(i) < '0') || (buffer.get(i) > '9'))
+				return false;
+		return true;
+	}
+	
+	/**
+	 * @return true if the text in [start, end) ends in ':' followed by a number.
+	 */
+	private static boolean endsInNumber(ByteBuffer buffer, int start, int end)
+	{
+		int colon = lastIndexOf(buffer, (byte)':', start, end);
+		return (colon >= 0) && isNumber(buffer, trimStart(buffer, colon + 1, end), end);
+	}
+	
+	/**
+	 * @return true if [start, end) holds an optionally signed decimal integer that fits in a long.
+	 */
+	private static boolean isInteger(ByteBuffer buffer, int start, int end)
+	{
+		int i = start;
+		if((i < end) && ((buffer.get(i) == '-') || (buffer.get(i) == '+')))
+			i++;
+		if((i == end) || (end - i > 19))
+			return false;
+		for(int k = i; k < end; k++)
+			if((buffer.get(k) < '0') || (buffer.get(k) > '9'))
+				return false;
+		if(end - i < 19)
+			return true;
+		// 19 digits: compare with the limit
+		byte[] limit = Long.toString(Long.MAX_VALUE).getBytes(Charset.forName("US-ASCII"));
+		boolean negative = buffer.get(start) == '-';
+		for(int k = 0; k < 19; k++)
+		{
+			int digit = buffer.get(i + k), max = limit[k] + ((negative && (k == 18)) ? 1 : 0);
+			if(digit != max)
+				return digit < max;
+		}
+		return true;
+	}
+	
+	private static long parseInteger(ByteBuffer buffer, int start, int end)
+	{
+		int i = start;
+		boolean negative = false;
+		if((buffer.get(i) == '-') || (buffer.get(i) == '+'))
+			negative = buffer.get(i++) == '-';
+		long value = 0; // accumulated negatively, so that Long.MIN_VALUE fits
+		for(; i < end; i++)
+			value = value * 10 - (buffer.get(i) - '0');
+		return negative ? value : -value;
+	}
+}
@@ -0,0 +1,75 @@
+package util.graph.io;
+
+import java.util.Arrays;
+import java.util.Collection;
+
+import util.graph.Edge;
+import util.graph.Graph;
+import util.graph.Node;
+
+/**
+ * Adds the edges read by an {@link EdgeListParser} to a {@link Graph}, creating the nodes as needed. A label that names a node already in the graph refers
+ * to (the first) such node.
+ * 
+ * <p>
+ * The nodes are remembered by the label ids of the parser, so that each label is looked up in the graph only once.
+ * 
+ * <p>
+ * Errors are logged to the log of the graph.
+ */
+public class GraphBuilder implements EdgeListParser.EdgeHandler
+{
+	protected Graph				graph			= null;
+	protected EdgeListParser	parser			= null;
+	protected Node[]			nodesByLabel	= new Node[256];
+	
+	/**
+	 * @param theGraph
+	 *            : the graph to add to
+	 * @param theParser
+	 *            : the parser whose label ids are received
+	 */
+	public GraphBuilder(Graph theGraph, EdgeListParser theParser)
+	{
+		this.graph = theGraph;
+		this.parser = theParser;
+	}
+	
+	@Override
+	public void edge(int fromLabel, int edgeLabel, int toLabel, long weight, boolean bidirectional)
+	{
+		Node node1 = getNode(fromLabel);
+		Node node2 = getNode(toLabel);
+		String edgeName = parser.getLabel(edgeLabel);
+		graph.addEdge(new Edge(node1, node2, edgeName, weight));
+		if(bidirectional)
+			graph.addEdge(new Edge(node2, node1, edgeName, weight));
+	}
+	
+	@Override
+	public void error(long line, long column, String message)
+	{
+		graph.getLog().error("input corrupted at line " + line + ", column " + column + ": " + message);
+	}
+	
+	protected Node getNode(int labelId)
+	{
+		if(labelId >= nodesByLabel.length)
+			nodesByLabel = Arrays.copyOf(nodesByLabel, Math.max(labelId + 1, nodesByLabel.length * 2));
+		Node node = nodesByLabel[labelId];
+		if(node == null)
+		{
+			String name = parser.getLabel(labelId);
+			Collection<Node> named = graph.getNodesNamed(name);
+			if(named.isEmpty())
+			{
+				node = new Node(name);
+				graph.addNode(node);
+			}
+			else
+				node = named.iterator().next();
+			nodesByLabel[labelId] = node;
+		}
+		return node;
+	}
+}
@@ -0,0 +1,291 @@
+package util.graph.io;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+
+import util.Config;
+import util.graph.Graph;
+import util.logging.Unit.UnitConfigData;
+
+/**
+ * Loads very large edge list files (in the syntax of {@link Graph#readFrom(java.io.InputStream)}) by memory-mapping them, so that the contents of the file are
+ * never copied onto the heap.
+ * 
+ * <p>
+ * The file is split into chunks that end at a ';' or at a line end, so that no statement is cut. The chunks are tokenized in parallel, each by its own
+ * {@link EdgeListParser}, into compact primitive edge records; the records are then added to the graph chunk by chunk, in file order, which is where the labels
+ * interned by the different parsers are merged into nodes. The records of a chunk are released as soon as the chunk is added, so that the heap holds little more
+ * than the graph itself.
+ * 
+ * <p>
+ * Errors are logged as by {@link Graph#readFrom(java.io.InputStream)}, with line and column relative to the whole file.
+ * 
+ * <p>
+ * Usage: <code>Graph g = new MappedGraphLoader(new MappedGraphLoader.LoaderConfig().setParallelism(8)).load(file);</code>
+ */
+public class MappedGraphLoader
+{
+	/**
+	 * Configures the loader. All parameters are optional.
+	 */
+	public static class LoaderConfig extends Config
+	{
+		UnitConfigData	graphConfig	= null;
+		Charset			charset		= Charset.defaultCharset();
+		long			chunkSize	= DEFAULT_CHUNK_SIZE;
+		ForkJoinPool	pool		= null;
+		int				parallelism	= Runtime.getRuntime().availableProcessors();
+		
+		public LoaderConfig()
+		{
+			super();
+		}
+		
+		/**
+		 * @param unitConfig
+		 *            : the configuration of the loaded graph
+		 * @return the config itself, for chained calls.
+		 */
+		public LoaderConfig setGraphConfig(UnitConfigData unitConfig)
+		{
+			this.graphConfig = unitConfig;
+			return this;
+		}
+		
+		public LoaderConfig setCharset(Charset inputCharset)
+		{
+			this.charset = inputCharset;
+			return this;
+		}
+		
+		/**
+		 * @param size
+		 *            : the approximate size of a chunk, in bytes; chunks are extended up to the next statement end.
+		 * @return the config itself, for chained calls.
+		 */
+		public LoaderConfig setChunkSize(long size)
+		{
+			if((size < 1) || (size > MAX_CHUNK_SIZE))
+				throw new IllegalArgumentException("chunk size must be between 1 and " + MAX_CHUNK_SIZE);
+			this.chunkSize = size;
+			return this;
+		}
+		
+		/**
+		 * @param forkJoinPool
+		 *            : the pool to parse the chunks on. The pool is not shut down by the loader.
+		 * @return the config itself, for chained calls.
+		 */
+		public LoaderConfig setPool(ForkJoinPool forkJoinPool)
+		{
+			this.pool = forkJoinPool;
+			return this;
+		}
+		
+		/**
+		 * @param threads
+		 *            : the number of threads of the pool created by the loader; ignored if a pool is set with {@link #setPool(ForkJoinPool)}.
+		 * @return the config itself, for chained calls.
+		 */
+		public LoaderConfig setParallelism(int threads)
+		{
+			if(threads < 1)
+				throw new IllegalArgumentException("parallelism must be positive");
+			this.parallelism = threads;
+			return this;
+		}
+	}
+	
+	/**
+	 * The edges and errors read from one chunk, together with the parser that holds their labels.
+	 */
+	static class ChunkRecords implements EdgeListParser.EdgeHandler
+	{
+		EdgeListParser	parser;
+		int				count		= 0;
+		int[]			from		= new int[1024];
+		int[]			label		= new int[1024];
+		int[]			to			= new int[1024];
+		long[]			weight		= new long[1024];
+		boolean[]		both		= new boolean[1024];
+		List<Object[]>	errors		= new ArrayList<Object[]>();
+		
+		ChunkRecords(Charset charset)
+		{
+			parser = new EdgeListParser(charset);
+		}
+		
+		@Override
+		public void edge(int fromLabel, int edgeLabel, int toLabel, long edgeWeight, boolean bidirectional)
+		{
+			if(count == from.length)
+			{
+				from = Arrays.copyOf(from, count * 2);
+				label = Arrays.copyOf(label, count * 2);
+				to = Arrays.copyOf(to, count * 2);
+				weight = Arrays.copyOf(weight, count * 2);
+				both = Arrays.copyOf(both, count * 2);
+			}
+			from[count] = fromLabel;
+			label[count] = edgeLabel;
+			to[count] = toLabel;
+			weight[count] = edgeWeight;
+			both[count] = bidirectional;
+			count++;
+		}
+		
+		@Override
+		public void error(long line, long column, String message)
+		{
+			errors.add(new Object[] { new Long(line), new Long(column), message });
+		}
+	}
+	
+	public static final long	DEFAULT_CHUNK_SIZE	= 64L << 20;
+	
+	/**
+	 * The largest size of a mapped region.
+	 */
+	public static final long	MAX_CHUNK_SIZE		= 1L << 30;
+	
+	protected LoaderConfig		config				= null;
+	
+	public MappedGraphLoader()
+	{
+		this(new LoaderConfig());
+	}
+	
+	public MappedGraphLoader(LoaderConfig conf)
+	{
+		if(conf == null)
+			throw new IllegalArgumentException("null configuration");
+		this.config = conf;
+	}
+	
+	/**
+	 * @param file
+	 *            : the edge list file
+	 * @return the graph read from the file.
+	 * @throws IOException
+	 *             if the file cannot be read.
+	 */
+	public Graph load(File file) throws IOException
+	{
+		RandomAccessFile raf = new RandomAccessFile(file, "r");
+		try
+		{
+			FileChannel channel = raf.getChannel();
+			List<MappedByteBuffer> chunks = split(channel);
+			List<ChunkRecords> records = parseAll(chunks);
+			chunks.clear();
+			
+			Graph g = new Graph(config.graphConfig);
+			long lineBase = 0;
+			long columnBase = 0;
+			for(int c = 0; c < records.size(); c++)
+			{
+				ChunkRecords chunk = records.get(c);
+				GraphBuilder builder = new GraphBuilder(g, chunk.parser);
+				for(int e = 0; e < chunk.count; e++)
+					builder.edge(chunk.from[e], chunk.label[e], chunk.to[e], chunk.weight[e], chunk.both[e]);
+				for(Object[] error : chunk.errors)
+				{
+					long line = ((Long)error[0]).longValue();
+					long column = ((Long)error[1]).longValue();
+					builder.error(lineBase + line, (line == 1) ? columnBase + column : column, (String)error[2]);
+				}
+				lineBase += chunk.parser.getLineCount();
+				columnBase = (chunk.parser.getLineCount() > 0) ? chunk.parser.getColumnOffset() : columnBase + chunk.parser.getColumnOffset();
+				records.set(c, null);
+			}
+			return g;
+		} finally
+		{
+			raf.close();
+		}
+	}
+	
+	/**
+	 * Maps the file in chunks of about the configured size, each ending right after a statement separator (or at the end of the file).
+	 */
+	protected List<MappedByteBuffer> split(FileChannel channel) throws IOException
+	{
+		List<MappedByteBuffer> chunks = new ArrayList<MappedByteBuffer>();
+		long size = channel.size();
+		long start = 0;
+		while(start < size)
+		{
+			long end = Math.min(start + config.chunkSize, size);
+			if(end < size)
+			{ // extend up to the next separator
+				MappedByteBuffer window = channel.map(FileChannel.MapMode.READ_ONLY, end - 1, Math.min(MAX_CHUNK_SIZE, size - end + 1));
+				int i = 0;
+				while((i < window.limit()) && !isSeparator(window.get(i)))
+					i++;
+				if(i == window.limit() && (end - 1 + i < size))
+					throw new IOException("statement too long at offset " + end);
+				end = Math.min(end + i, size);
+			}
+			if(end - start > Integer.MAX_VALUE)
+				throw new IOException("chunk too large at offset " + start);
+			chunks.add(channel.map(FileChannel.MapMode.READ_ONLY, start, end - start));
+			start = end;
+		}
+		return chunks;
+	}
+	
+	private static boolean isSeparator(byte b)
+	{
+		return (b == ';') || (b == '\n');
+	}
+	
+	/**
+	 * Tokenizes all chunks in parallel.
+	 */
+	protected List<ChunkRecords> parseAll(List<MappedByteBuffer> chunks) throws IOException
+	{
+		List<Callable<ChunkRecords>> tasks = new ArrayList<Callable<ChunkRecords>>();
+		for(final MappedByteBuffer chunk : chunks)
+			tasks.add(new Callable<ChunkRecords>() {
+				@Override
+				public ChunkRecords call()
+				{
+					ChunkRecords records = new ChunkRecords(config.charset);
+					records.parser.parse(chunk, true, records);
+					return records;
+				}
+			});
+		ForkJoinPool pool = config.pool;
+		if(pool == null)
+			pool = new ForkJoinPool(config.parallelism);
+		try
+		{
+			List<ChunkRecords> ret = new ArrayList<ChunkRecords>();
+			for(Future<ChunkRecords> result : pool.invokeAll(tasks))
+				ret.add(result.get());
+			return ret;
+		} catch(InterruptedException e)
+		{
+			Thread.currentThread().interrupt();
+			throw new IOException("interrupted while parsing", e);
+		} catch(ExecutionException e)
+		{
+			throw new IOException("parsing failed", e.getCause());
+		} finally
+		{
+			if(config.pool == null)
+				pool.shutdown();
+		}
+	}
+}
@@ -0,0 +1,216 @@
+package util.graph.paths;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import util.graph.Edge;
+import util.graph.Graph;
+import util.graph.Node;
+import util.graph.NodeIndex;
+
+/**
+ * The result of an all-pairs shortest path computation over a {@link Graph}.
+ * 
+ * <p>
+ * Distances and next hops are kept in flat, row-major primitive matrices indexed by the dense ids of a {@link NodeIndex}: the cell for the pair (i, j) is at
+ * <code>i * n + j</code>. The next hop of (i, j) is the id of the node that follows i on a shortest path from i to j, or -1 if j is not reachable from i.
+ * 
+ * <p>
+ * Paths can be read as lists ({@link #path(Node, Node)}), or walked lazily along the next hops with a {@link PathCursor} ({@link #walk(Node, Node)}), which
+ * creates no object per node; {@link #forEachPath(Node, PathVisitor)} walks all the paths from a source with a single cursor.
+ */
+public class AllPairsResult
+{
+	/**
+	 * The distance between two nodes that are not connected.
+	 */
+	public static final long	UNREACHABLE	= Long.MAX_VALUE;
+	
+	protected NodeIndex			index		= null;
+	protected int				n			= 0;
+	protected long[]			dist		= null;
+	protected int[]				next		= null;
+	
+	public AllPairsResult(NodeIndex nodeIndex, long[] distances, int[] nextHops)
+	{
+		this.index = nodeIndex;
+		this.n = nodeIndex.size();
+		if((distances.length != n * n) || (nextHops.length != n * n))
+			throw new IllegalArgumentException("matrices do not match the size of the index");
+		this.dist = distances;
+		this.next = nextHops;
+	}
+	
+	public NodeIndex getIndex()
+	{
+		return index;
+	}
+	
+	public int size()
+	{
+		return n;
+	}
+	
+	public long distance(int from, int to)
+	{
+		return dist[from * n + to];
+	}
+	
+	/**
+	 * @return the length of a shortest path between the two nodes, or {@link #UNREACHABLE} if there is no path.
+	 */
+	public long distance(Node from, Node to)
+	{
+		return distance(index.requireId(from), index.requireId(to));
+	}
+	
+	public boolean isReachable(Node from, Node to)
+	{
+		return distance(from, to) != UNREACHABLE;
+	}
+	
+	public int nextHop(int from, int to)
+	{
+		return next[from * n + to];
+	}
+	
+	/**
+	 * @return the nodes of a shortest path between the two nodes, both ends included; <code>null</code> if there is no path.
+	 */
+	public List<Node> path(Node from, Node to)
+	{
+		int i = index.requireId(from);
+		int j = index.requireId(to);
+		if(dist[i * n + j] == UNREACHABLE)
+			return null;
+		List<Node> ret = new ArrayList<Node>();
+		ret.add(from);
+		for(int k = i; k != j;)
+		{
+			k = next[k * n + j];
+			ret.add(index.get(k));
+		}
+		return ret;
+	}
+	
+	/**
+	 * @return the edges of a shortest path between the two nodes; an empty list if the nodes are the same; <code>null</code> if there is no path.
+	 */
+	public List<Edge> pathEdges(Node from, Node to)
+	{
+		List<Node> nodes = path(from, to);
+		if(nodes == null)
+			return null;
+		List<Edge> ret = new ArrayList<Edge>(nodes.size());
+		for(int k = 1; k < nodes.size(); k++)
+			ret.add(edgeBetween(nodes.get(k - 1), nodes.get(k)));
+		return ret;
+	}
+	
+	/**
+	 * @return a cursor over the nodes of a shortest path between the two nodes, both ends included, which follows the next hops as it advances; an empty
+	 *         cursor if there is no path.
+	 */
+	public PathCursor<Node> walk(Node from, Node to)
+	{
+		NextHopCursor<Node> ret = new NextHopCursor<Node>(false);
+		ret.reset(index.requireId(from), index.requireId(to));
+		return ret;
+	}
+	
+	/**
+	 * @return a cursor over the edges of a shortest path between the two nodes; an empty cursor if there is no path or if the nodes are the same.
+	 */
+	public PathCursor<Edge> walkEdges(Node from, Node to)
+	{
+		NextHopCursor<Edge> ret = new NextHopCursor<Edge>(true);
+		ret.reset(index.requireId(from), index.requireId(to));
+		return ret;
+	}
+	
+	/**
+	 * Walks the shortest paths from the source to every node it reaches, itself included, in the order of the node ids.
+	 */
+	public void forEachPath(Node source, PathVisitor visitor)
+	{
+		int i = index.requireId(source);
+		NextHopCursor<Node> cursor = new NextHopCursor<Node>(false);
+		for(int j = 0; j < n; j++)
+			if(dist[i * n + j] != UNREACHABLE)
+			{
+				cursor.reset(i, j);
+				visitor.visit(index.get(j), dist[i * n + j], cursor);
+			}
+	}
+	
+	/**
+	 * @return the lightest edge of the graph going from one node to the other. The nodes must be adjacent.
+	 */
+	protected Edge edgeBetween(Node from, Node to)
+	{
+		Graph graph = index.getGraph();
+		Edge ret = null;
+		for(Edge e : from.getOutEdges())
+			if((e.getTo() == to) && graph.contains(e) && ((ret == null) || (e.getWeight() < ret.getWeight())))
+				ret = e;
+		if(ret == null)
+			throw new IllegalStateException("no edge between " + from + " and " + to);
+		return ret;
+	}
+	
+	/**
+	 * @return the flat distance matrix. Not a copy; do not modify.
+	 */
+	public long[] getDistances()
+	{
+		return dist;
+	}
+	
+	/**
+	 * @return a copy of the distances in the narrowest cells that hold them.
+	 */
+	public DistanceMatrix toDistanceMatrix()
+	{
+		return DistanceMatrix.of(dist, n);
+	}
+	
+	/**
+	 * @return the flat next hop matrix. Not a copy; do not modify.
+	 */
+	public int[] getNextHops()
+	{
+		return next;
+	}
+	
+	/**
+	 * Walks the next hops toward a fixed destination.
+	 */
+	protected class NextHopCursor<T> extends PathCursor<T>
+	{
+		int	target	= -1;
+		
+		NextHopCursor(boolean edges)
+		{
+			super(edges);
+		}
+		
+		void reset(int from, int to)
+		{
+			target = to;
+			start((dist[from * n + to] == UNREACHABLE) ? -1 : from);
+		}
+		
+		@Override
+		protected int advance(int u)
+		{
+			return (u == target) ? -1 : next[u * n + target];
+		}
+		
+		@Override
+		@SuppressWarnings("unchecked")
+		protected T element(int previousId, int u)
+		{
+			return (T)(overEdges ? edgeBetween(index.get(previousId), index.get(u)) : index.get(u));
+		}
+	}
+}
@@ -0,0 +1,104 @@
+package util.graph.paths;
+
+import java.util.Arrays;
+
+import util.graph.CsrGraph;
+
+/**
+ * Bellman-Ford relaxation over a {@link CsrGraph}, for graphs that may have negative edge weights.
+ * 
+ * <p>
+ * {@link #potentials()} computes, for each node, the length of a shortest path ending at it from a virtual node joined to all nodes by edges of weight 0, which
+ * is what Johnson's algorithm uses to reweight the edges. Relaxation goes in rounds, and each round only relaxes the out-edges of the nodes whose distance
+ * changed in the previous round; the computation stops as soon as a round changes nothing. If the n-th round still changes a distance, the graph contains a
+ * negative cycle, which is then found by following the predecessors.
+ */
+public class BellmanFord
+{
+	protected CsrGraph	graph	= null;
+	
+	public BellmanFord(CsrGraph csr)
+	{
+		if(csr == null)
+			throw new IllegalArgumentException("the graph cannot be null");
+		this.graph = csr;
+	}
+	
+	/**
+	 * @return the potential of each node, by node id; all potentials are at most 0.
+	 * @throws NegativeCycleException
+	 *             if the graph contains a negative cycle.
+	 */
+	public long[] potentials()
+	{
+		int n = graph.n();
+		int[] offsets = graph.getOutOffsets();
+		int[] targets = graph.getOutTargets();
+		long[] weights = graph.getOutWeights();
+		
+		long[] dist = new long[n];
+		int[] predEdge = new int[n];
+		int[] pred = new int[n];
+		Arrays.fill(predEdge, -1);
+		Arrays.fill(pred, -1);
+		boolean[] active = new boolean[n];
+		boolean[] nextActive = new boolean[n];
+		Arrays.fill(active, true);
+		
+		for(int round = 1; round <= n; round++)
+		{
+			int changed = -1;
+			for(int u = 0; u < n; u++)
+				if(active[u])
+				{
+					active[u] = false;
+					long du = dist[u];
+					for(int p = offsets[u]; p < offsets[u + 1]; p++)
+					{
+						int v = targets[p];
+						if(du + weights[p] < dist[v])
+						{
+							dist[v] = du + weights[p];
+							pred[v] = u;
+							predEdge[v] = p;
+							nextActive[v] = true;
+							changed = v;
+						}
+					}
+				}
+			if(changed < 0)
+				return dist;
+			if(round == n)
+				throw findCycle(changed, pred, predEdge);
+			boolean[] swap = active;
+			active = nextActive;
+			nextActive = swap;
+		}
+		return dist;
+	}
+	
+	/**
+	 * Goes back n steps along the predecessors from a node changed in the last round, which leads into a cycle of the predecessor graph; such a cycle is
+	 * negative.
+	 */
+	protected NegativeCycleException findCycle(int changed, int[] pred, int[] predEdge)
+	{
+		int n = graph.n();
+		int x = changed;
+		for(int k = 0; k < n; k++)
+			x = pred[x];
+		int length = 1;
+		for(int u = pred[x]; u != x; u = pred[u])
+			length++;
+		int[] nodes = new int[length];
+		int[] edges = new int[length];
+		int u = x;
+		for(int k = length - 1; k >= 0; k--)
+		{
+			nodes[k] = pred[u];
+			edges[k] = predEdge[u];
+			u = pred[u];
+		}
+		return new NegativeCycleException(graph, nodes, edges);
+	}
+}
@@ -0,0 +1,144 @@
+package util.graph.paths;
+
+import util.graph.Edge;
+import util.graph.Graph;
+
+/**
+ * Cache-blocked (tiled) version of {@link FloydWarshall}, for graphs whose distance matrix is too large for the processor caches.
+ * 
+ * <p>
+ * The matrix is split into square tiles of a configurable size. For each block of pivots, the computation goes through three phases:
+ * <ol>
+ * <li>the diagonal tile (the one containing the pivots on both dimensions);
+ * <li>the tiles on the same row and on the same column as the diagonal tile, which only depend on themselves and on the diagonal tile;
+ * <li>all other tiles, which only depend on themselves and on the tiles of phase 2 that are on their row and column.
+ * </ol>
+ * Each tile is therefore relaxed with all the pivots of a block while it is in cache, instead of streaming the whole matrix once per pivot.
+ * 
+ * <p>
+ * The distances produced are identical to those of the textbook kernel. In case of equally short paths, the next hops may describe a different (but equally
+ * short) path. With negative weights, negative cycles are detected at the end of each block of pivots.
+ */
+public class BlockedFloydWarshall extends FloydWarshall
+{
+	/**
+	 * Adds the size of the tiles to the configuration.
+	 */
+	public static class BlockedFloydWarshallConfig extends FloydWarshallConfig
+	{
+		int	tileSize	= DEFAULT_TILE_SIZE;
+		
+		public BlockedFloydWarshallConfig(Graph thegraph)
+		{
+			super(thegraph);
+		}
+		
+		/**
+		 * @param size
+		 *            : the side of a tile, in matrix cells. A tile of the distance matrix takes <code>8 * size * size</code> bytes; the default of 64 (32 KB per
+		 *            distance tile) keeps the three tiles used by a relaxation within a typical L2 cache.
+		 * @return the config itself, for chained calls.
+		 */
+		public BlockedFloydWarshallConfig setTileSize(int size)
+		{
+			if(size < 1)
+				throw new IllegalArgumentException("tile size must be positive");
+			this.tileSize = size;
+			return this;
+		}
+	}
+	
+	public static final int	DEFAULT_TILE_SIZE	= 64;
+	
+	public BlockedFloydWarshall(Graph graph)
+	{
+		this(new BlockedFloydWarshallConfig(graph));
+	}
+	
+	public BlockedFloydWarshall(BlockedFloydWarshallConfig conf)
+	{
+		super(conf);
+	}
+	
+	protected int getTileSize()
+	{
+		return ((BlockedFloydWarshallConfig)config).tileSize;
+	}
+	
+	/**
+	 * The diagonal is checked at the end of each block of pivots.
+	 */
+	@Override
+	protected int runKernel(long[] dist, int[] next, int n)
+	{
+		int b = getTileSize();
+		for(int kb = 0; kb < n; kb += b)
+		{
+			int kEnd = Math.min(kb + b, n);
+			// phase 1: the diagonal tile
+			relaxTile(dist, next, n, kb, kEnd, kb, kEnd, kb, kEnd);
+			// phase 2: the pivot row and the pivot column
+			for(int t = 0; t < n; t += b)
+				if(t != kb)
+				{
+					int tEnd = Math.min(t + b, n);
+					relaxTile(dist, next, n, kb, kEnd, t, tEnd, kb, kEnd);
+					relaxTile(dist, next, n, t, tEnd, kb, kEnd, kb, kEnd);
+				}
+			// phase 3: the remaining tiles
+			for(int ib = 0; ib < n; ib += b)
+				if(ib != kb)
+				{
+					int iEnd = Math.min(ib + b, n);
+					for(int jb = 0; jb < n; jb += b)
+						if(jb != kb)
+							relaxTile(dist, next, n, ib, iEnd, jb, Math.min(jb + b, n), kb, kEnd);
+				}
+			int negative = findNegativeDiagonal(dist, n, 0, n);
+			if(negative >= 0)
+				return negative;
+		}
+		return -1;
+	}
+	
+	/**
+	 * Relaxing the tiles out of the textbook order gives the same distances, but when some edge weights are not positive, next hops along cycles of weight 0
+	 * may end up pointing at each other; they are then rebuilt from the distances.
+	 */
+	@Override
+	protected boolean nextHopsNeedRebuild()
+	{
+		for(Edge e : config.graph.getEdges())
+			if(e.getWeight() <= 0)
+				return true;
+		return false;
+	}
+	
+	/**
+	 * Relaxes the tile [iStart, iEnd) x [jStart, jEnd) with the pivots in [kStart, kEnd).
+	 */
+	protected static void relaxTile(long[] dist, int[] next, int n, int iStart, int iEnd, int jStart, int jEnd, int kStart, int kEnd)
+	{
+		for(int k = kStart; k < kEnd; k++)
+		{
+			int rowK = k * n;
+			for(int i = iStart; i < iEnd; i++)
+			{
+				int rowI = i * n;
+				long dik = dist[rowI + k];
+				if(dik == INF)
+					continue;
+				int nik = next[rowI + k];
+				for(int j = jStart; j < jEnd; j++)
+				{
+					long dkj = dist[rowK + j];
+					if((dkj != INF) && (dik + dkj < dist[rowI + j]))
+					{
+						dist[rowI + j] = dik + dkj;
+						next[rowI + j] = nik;
+					}
+				}
+			}
+		}
+	}
+}
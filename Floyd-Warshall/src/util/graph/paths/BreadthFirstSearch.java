@@ -0,0 +1,220 @@
+package util.graph.paths;
+
+import java.util.Arrays;
+
+import util.graph.CsrGraph;
+import util.graph.Graph;
+import util.graph.Node;
+
+/**
+ * Computes the number of edges on a shortest path from one node to all others, with a direction-optimizing breadth-first search over a {@link CsrGraph}.
+ * 
+ * <p>
+ * The search goes level by level, with the current and the next frontier kept as bitsets over the node ids, as is the set of visited nodes. A level is
+ * explored either top-down, from each node of the frontier to its unvisited neighbors, or bottom-up, from each unvisited node to its neighbors until one is
+ * found in the frontier. Bottom-up steps pay off when the frontier is large, since most unvisited nodes then find a parent after a few edges, while top-down
+ * steps would check all edges of the frontier against nodes mostly visited already. The search switches to bottom-up when the edges of the frontier are more
+ * than 1/alpha of the edges of the unvisited nodes, and back to top-down when the frontier shrinks below 1/beta of the nodes (Beamer et al., 2012).
+ * 
+ * <p>
+ * Edges can be followed forward, backward or both ways (see {@link Direction}); a bottom-up step looks at the neighbors in the opposite direction. The search
+ * keeps no state between calls, so an instance can serve several threads at once.
+ * 
+ * <p>
+ * Usage: <code>int[] hops = new BreadthFirstSearch(graph).distances(source, Direction.UNDIRECTED);</code>
+ */
+public class BreadthFirstSearch
+{
+	/**
+	 * The distance of the nodes that cannot be reached.
+	 */
+	public static final int	UNREACHED	= -1;
+	
+	protected CsrGraph		graph		= null;
+	protected int			alpha		= 14;
+	protected int			beta		= 24;
+	
+	/**
+	 * Takes a snapshot of the graph; later changes to the graph are not seen.
+	 */
+	public BreadthFirstSearch(Graph graph)
+	{
+		this(new CsrGraph(graph));
+	}
+	
+	public BreadthFirstSearch(CsrGraph csr)
+	{
+		if(csr == null)
+			throw new IllegalArgumentException("the graph cannot be null");
+		this.graph = csr;
+	}
+	
+	public CsrGraph getGraph()
+	{
+		return graph;
+	}
+	
+	/**
+	 * @param ratio
+	 *            : the search switches to bottom-up steps when the edges of the frontier are more than 1/ratio of the edges of the unvisited nodes
+	 * @return the search itself, for chained calls.
+	 */
+	public BreadthFirstSearch setAlpha(int ratio)
+	{
+		if(ratio < 1)
+			throw new IllegalArgumentException("alpha must be positive");
+		this.alpha = ratio;
+		return this;
+	}
+	
+	/**
+	 * @param ratio
+	 *            : the search switches back to top-down steps when the frontier shrinks below 1/ratio of the nodes
+	 * @return the search itself, for chained calls.
+	 */
+	public BreadthFirstSearch setBeta(int ratio)
+	{
+		if(ratio < 1)
+			throw new IllegalArgumentException("beta must be positive");
+		this.beta = ratio;
+		return this;
+	}
+	
+	public int[] distances(Node source, Direction direction)
+	{
+		int ret = graph.idOf(source);
+		if(ret < 0)
+			throw new IllegalArgumentException("node not in graph: " + source);
+		return distances(ret, direction);
+	}
+	
+	/**
+	 * @param source
+	 *            : the id of the source node
+	 * @param direction
+	 *            : the edges to follow
+	 * @return the number of edges on a shortest path from the source to each node, by node id; {@link #UNREACHED} for the nodes that cannot be reached.
+	 */
+	public int[] distances(int source, Direction direction)
+	{
+		int n = graph.n();
+		if((source < 0) || (source >= n))
+			throw new IllegalArgumentException("source out of range: " + source);
+		boolean forward = (direction != Direction.BACKWARD);
+		boolean backward = (direction != Direction.FORWARD);
+		int[] outOffsets = graph.getOutOffsets();
+		int[] inOffsets = graph.getInOffsets();
+		
+		int[] dist = new int[n];
+		Arrays.fill(dist, UNREACHED);
+		int words = (n + 63) >>> 6;
+		long[] frontier = new long[words];
+		long[] next = new long[words];
+		long[] visited = new long[words];
+		
+		dist[source] = 0;
+		frontier[source >>> 6] |= 1L << source;
+		visited[source >>> 6] |= 1L << source;
+		int frontierSize = 1;
+		long frontierEdges = degree(source, forward, backward, outOffsets, inOffsets);
+		long unvisitedEdges = (forward ? graph.m() : 0) + (backward ? graph.m() : 0) - frontierEdges;
+		boolean bottomUp = false;
+		int previousSize = 0;
+		
+		for(int level = 1; frontierSize > 0; level++)
+		{
+			if(bottomUp)
+				bottomUp = (frontierSize >= previousSize) || (frontierSize >= n / beta);
+			else
+				bottomUp = (frontierEdges > unvisitedEdges / alpha);
+			Arrays.fill(next, 0);
+			int nextSize = 0;
+			long nextEdges = 0;
+			for(int w = 0; w < words; w++)
+			{
+				long bits = bottomUp ? ~visited[w] : frontier[w];
+				if((w == words - 1) && ((n & 63) != 0))
+					bits &= (1L << n) - 1; // the ids past n in the last word
+				while(bits != 0)
+				{
+					int u = (w << 6) + Long.numberOfTrailingZeros(bits);
+					bits &= bits - 1;
+					if(bottomUp)
+					{
+						// a parent in the frontier follows an edge to u, so is found against the direction of the search
+						if((forward && hasParentIn(frontier, u, inOffsets, graph.getInSources()))
+								|| (backward && hasParentIn(frontier, u, outOffsets, graph.getOutTargets())))
+						{
+							next[w] |= 1L << u;
+							dist[u] = level;
+							nextSize++;
+							nextEdges += degree(u, forward, backward, outOffsets, inOffsets);
+						}
+					}
+					else
+					{
+						if(forward)
+							for(int p = outOffsets[u]; p < outOffsets[u + 1]; p++)
+								nextEdges += visit(graph.getOutTargets()[p], level, dist, visited, next, forward, backward, outOffsets, inOffsets);
+						if(backward)
+							for(int p = inOffsets[u]; p < inOffsets[u + 1]; p++)
+								nextEdges += visit(graph.getInSources()[p], level, dist, visited, next, forward, backward, outOffsets, inOffsets);
+					}
+				}
+			}
+			if(bottomUp)
+				for(int w = 0; w < words; w++)
+					visited[w] |= next[w];
+			else
+				nextSize = count(next);
+			long[] swap = frontier;
+			frontier = next;
+			next = swap;
+			previousSize = frontierSize;
+			frontierSize = nextSize;
+			frontierEdges = nextEdges;
+			unvisitedEdges -= nextEdges;
+		}
+		return dist;
+	}
+	
+	/**
+	 * Marks the node as reached at the given level if it was not visited yet.
+	 * 
+	 * @return the number of edges of the node if it was marked, for the frontier statistics; 0 otherwise.
+	 */
+	private static long visit(int v, int level, int[] dist, long[] visited, long[] next, boolean forward, boolean backward, int[] outOffsets, int[] inOffsets)
+	{
+		long bit = 1L << v;
+		if((visited[v >>> 6] & bit) != 0)
+			return 0;
+		visited[v >>> 6] |= bit;
+		next[v >>> 6] |= bit;
+		dist[v] = level;
+		return degree(v, forward, backward, outOffsets, inOffsets);
+	}
+	
+	private static boolean hasParentIn(long[] frontier, int u, int[] offsets, int[] others)
+	{
+		for(int p = offsets[u]; p < offsets[u + 1]; p++)
+		{
+			int v = others[p];
+			if((frontier[v >>> 6] & (1L << v)) != 0)
+				return true;
+		}
+		return false;
+	}
+	
+	private static long degree(int u, boolean forward, boolean backward, int[] outOffsets, int[] inOffsets)
+	{
+		return (forward ? outOffsets[u + 1] - outOffsets[u] : 0) + (backward ? inOffsets[u + 1] - inOffsets[u] : 0);
+	}
+	
+	private static int count(long[] bits)
+	{
+		int ret = 0;
+		for(long word : bits)
+			ret += Long.bitCount(word);
+		return ret;
+	}
+}
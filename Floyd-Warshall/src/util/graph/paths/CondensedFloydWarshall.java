@@ -0,0 +1,179 @@
+package util.graph.paths;
+
+import java.util.Arrays;
+
+import util.graph.CsrGraph;
+import util.graph.Graph;
+
+/**
+ * Computes all-pairs shortest paths one strongly connected component at a time, for graphs made of many small components chained together.
+ * 
+ * <p>
+ * Paths between two nodes of the same component never leave it, so each component gets its own {@link FloydWarshall} matrix, of its size only. The
+ * components are then combined over the acyclic condensation (see {@link StronglyConnectedComponents}): from a source, the components it can reach are taken
+ * in topological order, and the distance to a node of a component is the best over the edges entering the component, of the distance to the tail of the
+ * edge, plus its weight, plus the distance inside the component from the head of the edge. With components of at most s nodes, this takes
+ * O(n s^2 + n m + n^2 s) time instead of O(n^3); a graph that is a single component costs the same as {@link FloydWarshall}.
+ * 
+ * <p>
+ * A cycle of negative weight lies within a component, so it is found by the matrix of that component, and a {@link NegativeCycleException} is thrown. The
+ * next hops describe shortest paths, as with the textbook kernel.
+ * 
+ * <p>
+ * Usage: <code>AllPairsResult result = new CondensedFloydWarshall(graph).compute();</code>
+ */
+public class CondensedFloydWarshall extends FloydWarshall
+{
+	public CondensedFloydWarshall(Graph graph)
+	{
+		this(new FloydWarshallConfig(graph));
+	}
+	
+	public CondensedFloydWarshall(FloydWarshallConfig conf)
+	{
+		super(conf);
+	}
+	
+	/**
+	 * @return the shortest paths between all pairs of nodes.
+	 * @throws NegativeCycleException
+	 *             if the graph contains a cycle of negative weight.
+	 */
+	@Override
+	public AllPairsResult compute()
+	{
+		CsrGraph csr = new CsrGraph(config.graph);
+		int n = csr.n();
+		if(n > MAX_NODES)
+			throw new IllegalArgumentException("graph too large for a dense matrix: " + n + " nodes");
+		StronglyConnectedComponents scc = new StronglyConnectedComponents(csr);
+		int count = scc.count();
+		int[] component = scc.getComponents();
+		int[][] members = scc.members();
+		// the position of each node in its component
+		int[] local = new int[n];
+		int largest = 0;
+		for(int c = 0; c < count; c++)
+		{
+			largest = Math.max(largest, members[c].length);
+			for(int k = 0; k < members[c].length; k++)
+				local[members[c][k]] = k;
+		}
+		
+		long[][] innerDist = new long[count][];
+		int[][] innerNext = new int[count][];
+		for(int c = 0; c < count; c++)
+			computeComponent(csr, members[c], component, local, c, innerDist, innerNext);
+		log.trace(count + " components done, the largest with " + largest + " nodes");
+		
+		long[] dist = new long[n * n];
+		int[] next = new int[n * n];
+		long[] entry = new long[largest];
+		int[] entryHop = new int[largest];
+		int[] inOffsets = csr.getInOffsets();
+		int[] inSources = csr.getInSources();
+		long[] inWeights = csr.getInWeights();
+		for(int u = 0; u < n; u++)
+		{
+			int row = u * n;
+			Arrays.fill(dist, row, row + n, INF);
+			Arrays.fill(next, row, row + n, -1);
+			int cu = component[u];
+			int s = members[cu].length;
+			for(int k = 0; k < s; k++)
+			{
+				int v = members[cu][k];
+				int cell = local[u] * s + k;
+				dist[row + v] = innerDist[cu][cell];
+				next[row + v] = (innerNext[cu][cell] < 0) ? -1 : members[cu][innerNext[cu][cell]];
+			}
+			// the components that u may reach have lower numbers, and come after the components of the edges entering them
+			for(int c = cu - 1; c >= 0; c--)
+			{
+				int[] nodes = members[c];
+				s = nodes.length;
+				boolean entered = false;
+				for(int k = 0; k < s; k++)
+				{
+					entry[k] = INF;
+					int v = nodes[k];
+					for(int q = inOffsets[v]; q < inOffsets[v + 1]; q++)
+					{
+						int x = inSources[q];
+						if((component[x] == c) || (dist[row + x] == INF))
+							continue;
+						long d = dist[row + x] + inWeights[q];
+						if(d < entry[k])
+						{
+							entry[k] = d;
+							entryHop[k] = (x == u) ? v : next[row + x];
+							entered = true;
+						}
+					}
+				}
+				if(!entered)
+					continue;
+				long[] inner = innerDist[c];
+				for(int j = 0; j < s; j++)
+				{
+					long best = INF;
+					int hop = -1;
+					for(int k = 0; k < s; k++)
+						if((entry[k] != INF) && (inner[k * s + j] != INF) && (entry[k] + inner[k * s + j] < best))
+						{
+							best = entry[k] + inner[k * s + j];
+							hop = entryHop[k];
+						}
+					dist[row + nodes[j]] = best;
+					next[row + nodes[j]] = hop;
+				}
+			}
+		}
+		log.info("all-pairs shortest paths done for " + n + " nodes in " + count + " components");
+		return new AllPairsResult(csr.getIndex(), dist, next);
+	}
+	
+	/**
+	 * Runs the textbook kernel over the edges inside the component c, into matrices by the positions of the nodes in the component.
+	 * 
+	 * @throws NegativeCycleException
+	 *             if the component contains a cycle of negative weight.
+	 */
+	protected void computeComponent(CsrGraph csr, int[] nodes, int[] component, int[] local, int c, long[][] innerDist, int[][] innerNext)
+	{
+		int s = nodes.length;
+		long[] dist = new long[s * s];
+		int[] next = new int[s * s];
+		Arrays.fill(dist, INF);
+		Arrays.fill(next, -1);
+		int[] offsets = csr.getOutOffsets();
+		int[] targets = csr.getOutTargets();
+		long[] weights = csr.getOutWeights();
+		for(int i = 0; i < s; i++)
+		{
+			dist[i * s + i] = 0;
+			next[i * s + i] = i;
+		}
+		for(int i = 0; i < s; i++)
+			for(int p = offsets[nodes[i]]; p < offsets[nodes[i] + 1]; p++)
+			{
+				int v = targets[p];
+				if((component[v] == c) && (weights[p] < dist[i * s + local[v]]))
+				{
+					dist[i * s + local[v]] = weights[p];
+					next[i * s + local[v]] = local[v];
+				}
+			}
+		int negative = findNegativeDiagonal(dist, s, 0, s);
+		if(negative < 0)
+			negative = runKernel(dist, next, s);
+		if(negative >= 0)
+		{
+			// the cycle is found again on the whole graph, with the ids of its nodes and edges
+			new BellmanFord(csr).potentials();
+			throw new IllegalStateException("negative distance from " + nodes[negative] + " to itself without a negative cycle");
+		}
+		innerDist[c] = dist;
+		innerNext[c] = next;
+	}
+}
@@ -0,0 +1,172 @@
+package util.graph.paths;
+
+import java.util.Arrays;
+
+import util.graph.CsrGraph;
+import util.graph.Edge;
+import util.graph.Graph;
+import util.graph.Node;
+
+/**
+ * Computes single-source shortest paths over a directed graph with non-negative edge weights, with Dijkstra's algorithm.
+ * 
+ * <p>
+ * The search runs over a {@link CsrGraph} snapshot, with an {@link IndexedHeap} of node ids and distances in a <code>long[]</code>, so that no object is
+ * created per node or per edge. Each edge costs its {@link Edge#getWeight()}. Edges can be followed forward, backward or both ways (see {@link Direction}).
+ * 
+ * <p>
+ * An instance keeps its heap between computations, so that repeated queries on the same graph only allocate their results. For the same reason, an instance
+ * must not be used by several threads at once.
+ * 
+ * <p>
+ * Usage: <code>SingleSourceResult result = new Dijkstra(graph).compute(source, Direction.FORWARD);</code>
+ */
+public class Dijkstra
+{
+	protected static final long	INF		= AllPairsResult.UNREACHABLE;
+	
+	protected CsrGraph			graph	= null;
+	protected IndexedHeap		heap	= null;
+	
+	/**
+	 * Takes a snapshot of the graph; later changes to the graph are not seen.
+	 * 
+	 * @throws IllegalArgumentException
+	 *             if an edge has a negative weight.
+	 */
+	public Dijkstra(Graph graph)
+	{
+		this(new CsrGraph(graph));
+	}
+	
+	/**
+	 * @throws IllegalArgumentException
+	 *             if an edge has a negative weight.
+	 */
+	public Dijkstra(CsrGraph csr)
+	{
+		if(csr == null)
+			throw new IllegalArgumentException("the graph cannot be null");
+		long[] weights = csr.getOutWeights();
+		for(int p = 0; p < csr.m(); p++)
+			if(weights[p] < 0)
+				throw new IllegalArgumentException("negative edge weight " + weights[p] + (csr.isAttached() ? " on edge " + csr.getEdge(p) : ""));
+		this.graph = csr;
+		this.heap = new IndexedHeap(csr.n());
+	}
+	
+	public CsrGraph getGraph()
+	{
+		return graph;
+	}
+	
+	public SingleSourceResult compute(Node source, Direction direction)
+	{
+		return compute(requireId(source), -1, direction);
+	}
+	
+	public SingleSourceResult compute(int source, Direction direction)
+	{
+		return compute(source, -1, direction);
+	}
+	
+	/**
+	 * @return the length of a shortest path from one node to the other, or {@link AllPairsResult#UNREACHABLE} if there is none. The search stops as soon as
+	 *         the destination is reached.
+	 */
+	public long distance(Node from, Node to)
+	{
+		int target = requireId(to);
+		return compute(requireId(from), target, Direction.FORWARD).distance(target);
+	}
+	
+	/**
+	 * Runs the search from the source. If a target is given, the search stops as soon as the distance to the target is known; the distances (and paths) of the
+	 * nodes farther than the target are then not final.
+	 * 
+	 * @param source
+	 *            : the id of the source node
+	 * @param target
+	 *            : the id of the node at which to stop, or -1 to reach all nodes
+	 * @param direction
+	 *            : the edges to follow
+	 * @return the distances and shortest path tree.
+	 */
+	public SingleSourceResult compute(int source, int target, Direction direction)
+	{
+		int n = graph.n();
+		if((source < 0) || (source >= n))
+			throw new IllegalArgumentException("source out of range: " + source);
+		long[] dist = new long[n];
+		int[] pred = new int[n];
+		int[] predEdge = new int[n];
+		Arrays.fill(dist, INF);
+		Arrays.fill(pred, -1);
+		Arrays.fill(predEdge, -1);
+		run(source, target, direction, dist, pred, predEdge, null);
+		return new SingleSourceResult(graph, source, direction, dist, pred, predEdge);
+	}
+	
+	/**
+	 * The search itself, into arrays given by the caller, which must be filled with {@link #INF}, respectively -1.
+	 * 
+	 * @param settled
+	 *            : if not <code>null</code>, receives the ids of the nodes in the order in which their distance became final; a node always comes after its
+	 *            predecessor.
+	 * @return the number of nodes whose distance became final.
+	 */
+	protected int run(int source, int target, Direction direction, long[] dist, int[] pred, int[] predEdge, int[] settled)
+	{
+		boolean forward = (direction != Direction.BACKWARD);
+		boolean backward = (direction != Direction.FORWARD);
+		int count = 0;
+		dist[source] = 0;
+		heap.insert(source, 0);
+		while(!heap.isEmpty())
+		{
+			long du = heap.peekKey();
+			int u = heap.poll();
+			if(settled != null)
+				settled[count] = u;
+			count++;
+			if(u == target)
+				break;
+			if(forward)
+				relax(u, du, graph.getOutOffsets(), graph.getOutTargets(), graph.getOutWeights(), null, dist, pred, predEdge);
+			if(backward)
+				relax(u, du, graph.getInOffsets(), graph.getInSources(), graph.getInWeights(), graph.getInEdgeIds(), dist, pred, predEdge);
+		}
+		heap.clear();
+		return count;
+	}
+	
+	/**
+	 * Relaxes the edges of one row of a CSR form (forward or reverse).
+	 * 
+	 * @param edgeIds
+	 *            : the ids of the edges of the form; <code>null</code> if the positions are the ids.
+	 */
+	private void relax(int u, long du, int[] offsets, int[] others, long[] weights, int[] edgeIds, long[] dist, int[] pred, int[] predEdge)
+	{
+		for(int p = offsets[u]; p < offsets[u + 1]; p++)
+		{
+			int v = others[p];
+			long dv = du + weights[p];
+			if((dv >= 0) && (dv < dist[v])) // a negative sum is an overflow
+			{
+				dist[v] = dv;
+				pred[v] = u;
+				predEdge[v] = (edgeIds == null) ? p : edgeIds[p];
+				heap.offer(v, dv);
+			}
+		}
+	}
+	
+	protected int requireId(Node node)
+	{
+		int ret = graph.idOf(node);
+		if(ret < 0)
+			throw new IllegalArgumentException("node not in graph: " + node);
+		return ret;
+	}
+}
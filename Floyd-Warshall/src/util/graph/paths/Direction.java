@@ -0,0 +1,23 @@
+package util.graph.paths;
+
+import util.graph.Node;
+
+/**
+ * The edges followed by a traversal from a node.
+ */
+public enum Direction {
+	/**
+	 * Follow out-edges ({@link Node#getOutEdges()}): distances from the source.
+	 */
+	FORWARD,
+	
+	/**
+	 * Follow in-edges ({@link Node#getInEdges()}): distances to the source.
+	 */
+	BACKWARD,
+	
+	/**
+	 * Follow edges both ways, ignoring their direction.
+	 */
+	UNDIRECTED,
+}
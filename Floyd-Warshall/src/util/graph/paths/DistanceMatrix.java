@@ -0,0 +1,354 @@
+package util.graph.paths;
+
+import java.util.Arrays;
+
+/**
+ * A dense n x n matrix of distances, stored in the narrowest primitive type that can hold them.
+ * 
+ * <p>
+ * The cells are kept in a flat, row-major array of bytes, shorts, ints or longs (see {@link Width}). In each width, the largest value is reserved for
+ * {@link #UNREACHABLE}, and the finite distances range from the smallest value up to the one below it, so that negative distances are kept as well. Writing a
+ * distance that does not fit widens the whole matrix to the narrowest width that holds it; {@link #compact()} narrows it back once the distances are final.
+ * Hop counts on small-world graphs fit in bytes, which takes an eighth of the memory of a <code>long[]</code> matrix.
+ * 
+ * <p>
+ * Widening copies the matrix, and needs both arrays at once; a computation that knows its largest distance in advance should create the matrix in the right
+ * width. The matrix is not thread-safe: widening replaces the array under concurrent writers.
+ */
+public class DistanceMatrix
+{
+	/**
+	 * The width of the cells, with the range of distances it can hold.
+	 */
+	public enum Width {
+		BYTE(1, Byte.MIN_VALUE, Byte.MAX_VALUE),
+		SHORT(2, Short.MIN_VALUE, Short.MAX_VALUE),
+		INT(4, Integer.MIN_VALUE, Integer.MAX_VALUE),
+		LONG(8, Long.MIN_VALUE, Long.MAX_VALUE);
+		
+		final int	bytes;
+		final long	min;
+		/**
+		 * The largest value of the type, which stands for {@link DistanceMatrix#UNREACHABLE}.
+		 */
+		final long	sentinel;
+		
+		private Width(int cellBytes, long minValue, long maxValue)
+		{
+			bytes = cellBytes;
+			min = minValue;
+			sentinel = maxValue;
+		}
+		
+		/**
+		 * @return the number of bytes of a cell.
+		 */
+		public int bytes()
+		{
+			return bytes;
+		}
+		
+		/**
+		 * @return true if a cell of this width can hold the distance.
+		 */
+		public boolean fits(long distance)
+		{
+			return (distance == UNREACHABLE) || ((distance >= min) && (distance < sentinel));
+		}
+		
+		/**
+		 * @return the narrowest width that can hold all distances in [min, max].
+		 */
+		public static Width narrowest(long minDistance, long maxDistance)
+		{
+			for(Width width : values())
+				if(width.fits(minDistance) && width.fits(maxDistance))
+					return width;
+			return LONG;
+		}
+	}
+	
+	/**
+	 * The distance between two nodes that are not connected.
+	 */
+	public static final long	UNREACHABLE	= AllPairsResult.UNREACHABLE;
+	
+	protected int				n			= 0;
+	protected Width				width		= null;
+	protected byte[]			bytes		= null;
+	protected short[]			shorts		= null;
+	protected int[]				ints		= null;
+	protected long[]			longs		= null;
+	
+	/**
+	 * Creates a matrix in which no node reaches any other, nor itself.
+	 * 
+	 * @param size
+	 *            : the number of nodes
+	 * @param initialWidth
+	 *            : the width of the cells until a distance needs more
+	 */
+	public DistanceMatrix(int size, Width initialWidth)
+	{
+		if((size < 0) || (size > FloydWarshall.MAX_NODES))
+			throw new IllegalArgumentException("size out of range for a dense matrix: " + size);
+		if(initialWidth == null)
+			throw new IllegalArgumentException("null width");
+		this.n = size;
+		allocate(initialWidth);
+		fill(UNREACHABLE);
+	}
+	
+	/**
+	 * @param distances
+	 *            : a row-major n x n matrix, with {@link #UNREACHABLE} for the pairs that are not connected
+	 * @return a matrix of the narrowest width for the given distances.
+	 */
+	public static DistanceMatrix of(long[] distances, int size)
+	{
+		checkSize(distances.length, size);
+		long min = 0, max = 0;
+		for(long d : distances)
+			if(d != UNREACHABLE)
+			{
+				min = Math.min(min, d);
+				max = Math.max(max, d);
+			}
+		DistanceMatrix ret = new DistanceMatrix(size, Width.narrowest(min, max));
+		for(int k = 0; k < distances.length; k++)
+			ret.store(k, distances[k]);
+		return ret;
+	}
+	
+	/**
+	 * @param hops
+	 *            : a row-major n x n matrix, with {@link BreadthFirstSearch#UNREACHED} for the pairs that are not connected
+	 * @return a matrix of the narrowest width for the given hop counts.
+	 */
+	public static DistanceMatrix ofHops(int[] hops, int size)
+	{
+		checkSize(hops.length, size);
+		int max = 0;
+		for(int h : hops)
+			max = Math.max(max, h);
+		DistanceMatrix ret = new DistanceMatrix(size, Width.narrowest(0, max));
+		for(int k = 0; k < hops.length; k++)
+			ret.store(k, (hops[k] == BreadthFirstSearch.UNREACHED) ? UNREACHABLE : hops[k]);
+		return ret;
+	}
+	
+	private static void checkSize(int cells, int size)
+	{
+		if(cells != (long)size * size)
+			throw new IllegalArgumentException("a matrix of " + cells + " cells is not " + size + " x " + size);
+	}
+	
+	public int size()
+	{
+		return n;
+	}
+	
+	public Width getWidth()
+	{
+		return width;
+	}
+	
+	/**
+	 * @return the number of bytes taken by the cells.
+	 */
+	public long memory()
+	{
+		return (long)n * n * width.bytes;
+	}
+	
+	/**
+	 * @return the distance from i to j, or {@link #UNREACHABLE}.
+	 */
+	public long get(int i, int j)
+	{
+		return load(i * n + j);
+	}
+	
+	public boolean isReachable(int i, int j)
+	{
+		return get(i, j) != UNREACHABLE;
+	}
+	
+	/**
+	 * Sets the distance from i to j, widening the matrix first if the distance does not fit.
+	 */
+	public void set(int i, int j, long distance)
+	{
+		if(!width.fits(distance))
+			widen(distance);
+		store(i * n + j, distance);
+	}
+	
+	/**
+	 * Sets the distance from i to j if it is shorter than the current one.
+	 * 
+	 * @return true if the distance changed.
+	 */
+	public boolean relax(int i, int j, long distance)
+	{
+		if(distance >= get(i, j))
+			return false;
+		set(i, j, distance);
+		return true;
+	}
+	
+	/**
+	 * Sets all the cells, widening the matrix first if the distance does not fit.
+	 */
+	public void fill(long distance)
+	{
+		if(!width.fits(distance))
+			widen(distance);
+		long cell = (distance == UNREACHABLE) ? width.sentinel : distance;
+		switch(width)
+		{
+		case BYTE:
+			Arrays.fill(bytes, (byte)cell);
+			break;
+		case SHORT:
+			Arrays.fill(shorts, (short)cell);
+			break;
+		case INT:
+			Arrays.fill(ints, (int)cell);
+			break;
+		default:
+			Arrays.fill(longs, cell);
+		}
+	}
+	
+	/**
+	 * Narrows the matrix to the narrowest width that holds its current distances.
+	 * 
+	 * @return the matrix itself.
+	 */
+	public DistanceMatrix compact()
+	{
+		long min = 0, max = 0;
+		int cells = n * n;
+		for(int k = 0; k < cells; k++)
+		{
+			long d = load(k);
+			if(d != UNREACHABLE)
+			{
+				min = Math.min(min, d);
+				max = Math.max(max, d);
+			}
+		}
+		Width target = Width.narrowest(min, max);
+		if(target.bytes < width.bytes)
+			convert(target);
+		return this;
+	}
+	
+	/**
+	 * @return the distances as a row-major <code>long[]</code>, with {@link #UNREACHABLE} for the pairs that are not connected.
+	 */
+	public long[] toLongArray()
+	{
+		long[] ret = new long[n * n];
+		for(int k = 0; k < ret.length; k++)
+			ret[k] = load(k);
+		return ret;
+	}
+	
+	/**
+	 * Widens the matrix to the narrowest width that holds both the current range and the distance.
+	 */
+	protected void widen(long distance)
+	{
+		Width target = width;
+		while(!target.fits(distance))
+			target = Width.values()[target.ordinal() + 1];
+		convert(target);
+	}
+	
+	/**
+	 * Copies the cells into an array of the given width, which must hold all of them.
+	 */
+	protected void convert(Width target)
+	{
+		int cells = n * n;
+		Width old = width;
+		byte[] oldBytes = bytes;
+		short[] oldShorts = shorts;
+		int[] oldInts = ints;
+		long[] oldLongs = longs;
+		allocate(target);
+		for(int k = 0; k < cells; k++)
+		{
+			long cell;
+			switch(old)
+			{
+			case BYTE:
+				cell = oldBytes[k];
+				break;
+			case SHORT:
+				cell = oldShorts[k];
+				break;
+			case INT:
+				cell = oldInts[k];
+				break;
+			default:
+				cell = oldLongs[k];
+			}
+			store(k, (cell == old.sentinel) ? UNREACHABLE : cell);
+		}
+	}
+	
+	private void allocate(Width target)
+	{
+		int cells = n * n;
+		bytes = (target == Width.BYTE) ? new byte[cells] : null;
+		shorts = (target == Width.SHORT) ? new short[cells] : null;
+		ints = (target == Width.INT) ? new int[cells] : null;
+		longs = (target == Width.LONG) ? new long[cells] : null;
+		width = target;
+	}
+	
+	private long load(int k)
+	{
+		long cell;
+		switch(width)
+		{
+		case BYTE:
+			cell = bytes[k];
+			break;
+		case SHORT:
+			cell = shorts[k];
+			break;
+		case INT:
+			cell = ints[k];
+			break;
+		default:
+			return longs[k]; // the sentinel of longs is UNREACHABLE itself
+		}
+		return (cell == width.sentinel) ? UNREACHABLE : cell;
+	}
+	
+	/**
+	 * Writes a distance that fits the current width.
+	 */
+	private void store(int k, long distance)
+	{
+		long cell = (distance == UNREACHABLE) ? width.sentinel : distance;
+		switch(width)
+		{
+		case BYTE:
+			bytes[k] = (byte)cell;
+			break;
+		case SHORT:
+			shorts[k] = (short)cell;
+			break;
+		case INT:
+			ints[k] = (int)cell;
+			break;
+		default:
+			longs[k] = cell;
+		}
+	}
+}
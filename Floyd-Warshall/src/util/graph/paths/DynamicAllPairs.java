@@ -0,0 +1,572 @@
+package util.graph.paths;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import util.graph.Edge;
+import util.graph.Graph;
+import util.graph.Node;
+import util.graph.NodeIndex;
+import util.logging.Unit;
+
+/**
+ * All-pairs shortest paths of a {@link Graph}, kept up to date as the graph changes.
+ * 
+ * <p>
+ * The structure listens to the changes of the graph (see {@link Graph.GraphListener}). When an edge (u, v) of weight w is added, or when the weight of an edge
+ * decreases, the only new shortest paths are those that go through the edge, so every pair (i, j) is relaxed with dist(i, u) + w + dist(v, j), in O(n^2)
+ * time instead of the O(n^3) of a new computation; only the rows of the nodes that reach u and the columns of the nodes reached from v are visited. A new node
+ * gets a new row and column, and its edges are then added one by one.
+ * 
+ * <p>
+ * When an edge (u, v) is removed, or its weight increases, only the pairs whose shortest path went through the edge can change. For each destination j, the
+ * next hops toward j form a tree; if the hop of u toward j is v, the affected sources are those of the subtree of u, and only their distances to j are computed
+ * again, with a Dijkstra search over the subtree seeded from the unaffected nodes around it (see {@link ColumnRepair}). A removed node is handled the same way,
+ * for all the destinations it leads to, after which its id is left unused.
+ * 
+ * <p>
+ * An insertion that closes a negative cycle marks the distances as stale; they are then computed again with {@link FloydWarshall} at the next query. So do the
+ * removals, once more than half of the ids are unused, so that the matrices are compacted.
+ * 
+ * <p>
+ * Distances and next hops are kept in flat matrices whose rows have a capacity larger than the number of nodes, so that nodes can be added without moving the
+ * matrix each time; when the capacity is exceeded, it is doubled. Nodes keep their ids for as long as the matrices are not rebuilt.
+ * 
+ * <p>
+ * As the graph itself, the structure is not thread-safe. Usage: <code>DynamicAllPairs paths = new DynamicAllPairs(graph);</code>, then
+ * <code>paths.distance(a, b)</code> at any time; {@link #detach()} when the structure is no longer needed.
+ */
+public class DynamicAllPairs extends Unit implements Graph.GraphListener
+{
+	protected static final long	INF			= AllPairsResult.UNREACHABLE;
+	
+	protected Graph				graph		= null;
+	/**
+	 * The id of each node, which is its row and column in the matrices.
+	 */
+	protected Map<Node, Integer>	ids			= new HashMap<Node, Integer>();
+	/**
+	 * The node of each id.
+	 */
+	protected List<Node>		nodes		= new ArrayList<Node>();
+	protected int				n			= 0;
+	/**
+	 * The number of ids whose node was removed from the graph.
+	 */
+	protected int				unused		= 0;
+	/**
+	 * The length of a row of the matrices: the cell of (i, j) is at <code>i * stride + j</code>.
+	 */
+	protected int				stride		= 0;
+	protected long[]			dist		= null;
+	protected int[]				next		= null;
+	/**
+	 * False if the matrices do not reflect the graph, and must be rebuilt before they are read.
+	 */
+	protected boolean			valid		= false;
+	
+	/**
+	 * Computes the shortest paths of the graph and starts listening to its changes.
+	 * 
+	 * @throws NegativeCycleException
+	 *             if the graph contains a cycle of negative weight.
+	 */
+	public DynamicAllPairs(Graph theGraph)
+	{
+		super();
+		if(theGraph == null)
+			throw new IllegalArgumentException("the graph cannot be null");
+		this.graph = theGraph;
+		rebuild();
+		graph.addListener(this);
+	}
+	
+	/**
+	 * Stops listening to the changes of the graph. The distances are not updated anymore.
+	 */
+	public void detach()
+	{
+		graph.removeListener(this);
+	}
+	
+	public Graph getGraph()
+	{
+		return graph;
+	}
+	
+	/**
+	 * @return the length of a shortest path between the two nodes, or {@link AllPairsResult#UNREACHABLE} if there is no path.
+	 * @throws NegativeCycleException
+	 *             if the distances must be recomputed and the graph contains a cycle of negative weight.
+	 */
+	public long distance(Node from, Node to)
+	{
+		ensureValid();
+		return dist[requireId(from) * stride + requireId(to)];
+	}
+	
+	public boolean isReachable(Node from, Node to)
+	{
+		return distance(from, to) != INF;
+	}
+	
+	/**
+	 * @return the nodes of a shortest path between the two nodes, both ends included; <code>null</code> if there is no path.
+	 */
+	public List<Node> path(Node from, Node to)
+	{
+		ensureValid();
+		int i = requireId(from);
+		int j = requireId(to);
+		if(dist[i * stride + j] == INF)
+			return null;
+		List<Node> ret = new ArrayList<Node>();
+		ret.add(from);
+		for(int k = i; k != j;)
+		{
+			k = next[k * stride + j];
+			ret.add(nodes.get(k));
+		}
+		return ret;
+	}
+	
+	/**
+	 * @return the edges of a shortest path between the two nodes; an empty list if the nodes are the same; <code>null</code> if there is no path.
+	 */
+	public List<Edge> pathEdges(Node from, Node to)
+	{
+		List<Node> path = path(from, to);
+		if(path == null)
+			return null;
+		List<Edge> ret = new ArrayList<Edge>(path.size());
+		for(int k = 1; k < path.size(); k++)
+		{
+			Edge lightest = null;
+			for(Edge e : path.get(k - 1).getOutEdges())
+				if((e.getTo() == path.get(k)) && graph.contains(e) && ((lightest == null) || (e.getWeight() < lightest.getWeight())))
+					lightest = e;
+			ret.add(lightest);
+		}
+		return ret;
+	}
+	
+	/**
+	 * @return a copy of the current shortest paths, as an independent {@link AllPairsResult}.
+	 */
+	public AllPairsResult toResult()
+	{
+		ensureValid();
+		NodeIndex index = new NodeIndex(graph);
+		int size = index.size();
+		int[] toIndex = new int[n];
+		Arrays.fill(toIndex, -1);
+		int[] fromIndex = new int[size];
+		for(int u = 0; u < size; u++)
+		{
+			fromIndex[u] = requireId(index.get(u));
+			toIndex[fromIndex[u]] = u;
+		}
+		long[] d = new long[cells(size)];
+		int[] h = new int[cells(size)];
+		for(int i = 0; i < size; i++)
+			for(int j = 0; j < size; j++)
+			{
+				int cell = fromIndex[i] * stride + fromIndex[j];
+				d[i * size + j] = dist[cell];
+				h[i * size + j] = (next[cell] < 0) ? -1 : toIndex[next[cell]];
+			}
+		return new AllPairsResult(index, d, h);
+	}
+	
+	/**
+	 * @return true if the distances reflect the graph; otherwise, they are recomputed at the next query.
+	 */
+	public boolean isValid()
+	{
+		return valid;
+	}
+	
+	@Override
+	public void nodeAdded(Graph g, Node node)
+	{
+		if(!valid)
+			return;
+		addNode(node);
+		for(Edge e : node.getOutEdges())
+			if(graph.contains(e))
+				edgeAdded(g, e);
+		for(Edge e : node.getInEdges())
+			if(graph.contains(e) && (e.getFrom() != node))
+				edgeAdded(g, e);
+	}
+	
+	@Override
+	public void nodeRemoved(Graph g, Node node)
+	{
+		Integer id = ids.get(node);
+		if(valid && (id != null))
+			removeNode(id.intValue());
+	}
+	
+	@Override
+	public void edgeAdded(Graph g, Edge edge)
+	{
+		if(!valid)
+			return;
+		Integer from = ids.get(edge.getFrom());
+		Integer to = ids.get(edge.getTo());
+		if((from != null) && (to != null))
+			relaxThrough(from.intValue(), to.intValue(), edge.getWeight());
+	}
+	
+	@Override
+	public void edgeRemoved(Graph g, Edge edge)
+	{
+		if(valid)
+			lengthened(edge, edge.getWeight());
+	}
+	
+	@Override
+	public void edgeWeightChanged(Graph g, Edge edge, long oldWeight)
+	{
+		if(edge.getWeight() < oldWeight)
+			edgeAdded(g, edge);
+		else if(valid)
+			lengthened(edge, oldWeight);
+	}
+	
+	/**
+	 * Relaxes all pairs through the edge (u, v) of weight w. If the edge closes a negative cycle, the distances are marked as stale instead.
+	 */
+	protected void relaxThrough(int u, int v, long w)
+	{
+		if(w >= dist[u * stride + v])
+			return; // any path through the edge is at least as long as going from u to v as before
+		long dvu = dist[v * stride + u];
+		if((dvu != INF) && (dvu + w < 0))
+		{
+			invalidate("negative cycle closed by edge " + nodes.get(u) + " -> " + nodes.get(v));
+			return;
+		}
+		// without negative cycles, neither column u nor row v changes below
+		int[] sources = new int[n];
+		int[] targets = new int[n];
+		int nSources = 0, nTargets = 0;
+		for(int i = 0; i < n; i++)
+		{
+			if(dist[i * stride + u] != INF)
+				sources[nSources++] = i;
+			if(dist[v * stride + i] != INF)
+				targets[nTargets++] = i;
+		}
+		int rowV = v * stride;
+		for(int s = 0; s < nSources; s++)
+		{
+			int i = sources[s];
+			int rowI = i * stride;
+			long base = dist[rowI + u] + w;
+			int hop = (i == u) ? v : next[rowI + u];
+			for(int t = 0; t < nTargets; t++)
+			{
+				int j = targets[t];
+				long d = base + dist[rowV + j];
+				if(d < dist[rowI + j])
+				{
+					dist[rowI + j] = d;
+					next[rowI + j] = hop;
+				}
+			}
+		}
+	}
+	
+	/**
+	 * Repairs the distances after an edge was removed from the graph or made heavier.
+	 * 
+	 * @param oldWeight
+	 *            : the weight of the edge before the change
+	 */
+	protected void lengthened(Edge edge, long oldWeight)
+	{
+		Integer from = ids.get(edge.getFrom());
+		Integer to = ids.get(edge.getTo());
+		if((from == null) || (to == null) || (from.intValue() == to.intValue()))
+			return;
+		int u = from.intValue();
+		int v = to.intValue();
+		if(oldWeight > dist[u * stride + v])
+			return; // the edge was on no shortest path
+		for(Edge e : edge.getFrom().getOutEdges())
+			if((e.getTo() == edge.getTo()) && graph.contains(e) && (e.getWeight() <= oldWeight))
+				return; // another edge as light is still there
+		// a hop from u to v stands for the lightest edge between them, which was this one
+		ColumnRepair repair = new ColumnRepair();
+		int rowU = u * stride;
+		int columns = 0;
+		for(int j = 0; j < n; j++)
+			if((j != u) && (next[rowU + j] == v))
+			{
+				repair.repair(j, u, true);
+				columns++;
+			}
+		log.trace("edge " + edge + " lengthened: " + columns + " destinations repaired");
+	}
+	
+	/**
+	 * Repairs the distances toward all the destinations the node led to, then leaves the id of the node unused.
+	 */
+	protected void removeNode(int u)
+	{
+		Node node = nodes.get(u);
+		ids.remove(node);
+		nodes.set(u, null);
+		unused++;
+		ColumnRepair repair = new ColumnRepair();
+		int rowU = u * stride;
+		for(int j = 0; j < n; j++)
+			if((j != u) && (dist[rowU + j] != INF))
+				repair.repair(j, u, false);
+		for(int k = 0; k < n; k++)
+		{
+			dist[rowU + k] = INF;
+			next[rowU + k] = -1;
+			dist[k * stride + u] = INF;
+			next[k * stride + u] = -1;
+		}
+		if(2 * unused > n)
+			invalidate("more than half of the ids unused");
+		else
+			log.trace("node " + node + " removed");
+	}
+	
+	/**
+	 * Computes again the distances toward one destination j, from the nodes whose next hops toward j go through a given node r.
+	 * 
+	 * <p>
+	 * The nodes outside the subtree of r keep their distance to j, which did not use the changed edges. The new distance of a node of the subtree is found
+	 * with a Dijkstra search backward from the border of the subtree: each node is first given its best path through an out-edge that leaves the subtree, then
+	 * the nodes are settled by increasing distance, and relax the in-edges that come from the subtree. The old distances are a valid potential for the changed
+	 * graph (no edge became lighter), so the search runs on the reduced distances, new minus old, which are never negative even with negative weights.
+	 * 
+	 * <p>
+	 * The working arrays are marked with a stamp per repair, so that one instance serves all the destinations of a change without being cleared.
+	 */
+	protected class ColumnRepair
+	{
+		int[]		childHead	= new int[n];
+		int[]		childNext	= new int[n];
+		int[]		members		= new int[n];
+		int[]		inSubtree	= new int[n];
+		int[]		settled		= new int[n];
+		long[]		oldDist		= new long[n];
+		long[]		newDist		= new long[n];
+		int[]		hop			= new int[n];
+		IndexedHeap	heap		= new IndexedHeap(n);
+		int			stamp		= 0;
+		
+		/**
+		 * @param j
+		 *            : the destination
+		 * @param r
+		 *            : the root of the subtree to repair
+		 * @param withRoot
+		 *            : false if the root itself is removed, and neither repaired nor used
+		 */
+		void repair(int j, int r, boolean withRoot)
+		{
+			stamp++;
+			int count = collectSubtree(j, r);
+			int first = withRoot ? 0 : 1;
+			for(int k = first; k < count; k++)
+			{
+				int i = members[k];
+				oldDist[i] = dist[i * stride + j];
+				newDist[i] = INF;
+				hop[i] = -1;
+				for(Edge e : nodes.get(i).getOutEdges())
+				{
+					Integer x = ids.get(e.getTo());
+					if((x == null) || (inSubtree[x.intValue()] == stamp) || !graph.contains(e))
+						continue;
+					long dx = dist[x.intValue() * stride + j];
+					if((dx != INF) && (e.getWeight() + dx < newDist[i]))
+					{
+						newDist[i] = e.getWeight() + dx;
+						hop[i] = x.intValue();
+					}
+				}
+				if(hop[i] >= 0)
+					heap.offer(i, newDist[i] - oldDist[i]);
+			}
+			while(!heap.isEmpty())
+			{
+				int i = heap.poll();
+				settled[i] = stamp;
+				for(Edge e : nodes.get(i).getInEdges())
+				{
+					Integer y = ids.get(e.getFrom());
+					if((y == null) || (inSubtree[y.intValue()] != stamp) || (settled[y.intValue()] == stamp) || !graph.contains(e))
+						continue;
+					int k = y.intValue();
+					long d = e.getWeight() + newDist[i];
+					if(d < newDist[k])
+					{
+						newDist[k] = d;
+						hop[k] = i;
+						heap.offer(k, d - oldDist[k]);
+					}
+				}
+			}
+			for(int k = first; k < count; k++)
+			{
+				int i = members[k];
+				dist[i * stride + j] = newDist[i];
+				next[i * stride + j] = hop[i];
+			}
+		}
+		
+		/**
+		 * Lists the subtree of r in the tree of next hops toward j, r first, into {@link #members}, and marks its nodes in {@link #inSubtree}.
+		 * 
+		 * @return the number of nodes in the subtree.
+		 */
+		int collectSubtree(int j, int r)
+		{
+			Arrays.fill(childHead, -1);
+			for(int i = 0; i < n; i++)
+			{
+				int parent = next[i * stride + j];
+				if((i != j) && (parent >= 0))
+				{
+					childNext[i] = childHead[parent];
+					childHead[parent] = i;
+				}
+			}
+			members[0] = r;
+			inSubtree[r] = stamp;
+			int count = 1;
+			for(int k = 0; k < count; k++)
+				for(int c = childHead[members[k]]; c >= 0; c = childNext[c])
+				{
+					members[count++] = c;
+					inSubtree[c] = stamp;
+				}
+			return count;
+		}
+	}
+	
+	/**
+	 * Gives the node a new id, with no path to or from any other node.
+	 */
+	protected int addNode(Node node)
+	{
+		if(n == stride)
+		{
+			if(stride == FloydWarshall.MAX_NODES)
+				throw new IllegalArgumentException("graph too large for a dense matrix: " + (n + 1) + " nodes");
+			resize(Math.min(FloydWarshall.MAX_NODES, 2 * stride + 16));
+		}
+		int u = n++;
+		ids.put(node, new Integer(u));
+		nodes.add(node);
+		for(int k = 0; k < n; k++)
+		{
+			dist[u * stride + k] = INF;
+			next[u * stride + k] = -1;
+			dist[k * stride + u] = INF;
+			next[k * stride + u] = -1;
+		}
+		dist[u * stride + u] = 0;
+		next[u * stride + u] = u;
+		return u;
+	}
+	
+	protected void resize(int newStride)
+	{
+		long[] newDist = new long[cells(newStride)];
+		int[] newNext = new int[cells(newStride)];
+		for(int i = 0; i < n; i++)
+		{
+			System.arraycopy(dist, i * stride, newDist, i * newStride, n);
+			System.arraycopy(next, i * stride, newNext, i * newStride, n);
+		}
+		dist = newDist;
+		next = newNext;
+		stride = newStride;
+	}
+	
+	protected void invalidate(String reason)
+	{
+		if(valid)
+			log.trace("distances stale: " + reason);
+		valid = false;
+	}
+	
+	protected void ensureValid()
+	{
+		if(!valid)
+			rebuild();
+	}
+	
+	/**
+	 * Computes all distances again, from scratch.
+	 * 
+	 * @throws NegativeCycleException
+	 *             if the graph contains a cycle of negative weight; the distances then stay stale.
+	 */
+	protected void rebuild()
+	{
+		FloydWarshall engine = new FloydWarshall(graph);
+		AllPairsResult result;
+		try
+		{
+			result = engine.compute();
+		} finally
+		{
+			engine.exit();
+		}
+		NodeIndex index = result.getIndex();
+		n = index.size();
+		unused = 0;
+		stride = Math.min(FloydWarshall.MAX_NODES, Math.max(16, n + n / 2));
+		ids.clear();
+		nodes.clear();
+		for(int u = 0; u < n; u++)
+		{
+			ids.put(index.get(u), new Integer(u));
+			nodes.add(index.get(u));
+		}
+		dist = new long[cells(stride)];
+		next = new int[cells(stride)];
+		for(int i = 0; i < n; i++)
+		{
+			System.arraycopy(result.getDistances(), i * n, dist, i * stride, n);
+			System.arraycopy(result.getNextHops(), i * n, next, i * stride, n);
+		}
+		valid = true;
+		log.trace("distances rebuilt for " + n + " nodes");
+	}
+	
+	/**
+	 * @return the number of cells of a square matrix with rows of the given length.
+	 * @throws IllegalArgumentException
+	 *             if the matrix does not fit in an array.
+	 */
+	protected static int cells(int side)
+	{
+		long ret = (long)side * side;
+		if(ret > Integer.MAX_VALUE)
+			throw new IllegalArgumentException("graph too large for a dense matrix: " + side + " nodes");
+		return (int)ret;
+	}
+	
+	protected int requireId(Node node)
+	{
+		Integer ret = ids.get(node);
+		if(ret == null)
+			throw new IllegalArgumentException("node not in graph: " + node);
+		return ret.intValue();
+	}
+}
@@ -0,0 +1,293 @@
+package util.graph.paths;
+
+import java.util.Arrays;
+
+import util.graph.CsrGraph;
+import util.graph.Edge;
+import util.graph.Graph;
+import util.graph.NodeIndex;
+import util.logging.Unit;
+
+/**
+ * Computes all-pairs shortest paths over a directed {@link Graph} with the Floyd-Warshall algorithm.
+ * 
+ * <p>
+ * The nodes of the graph are compacted into dense ids by a {@link NodeIndex}, and the computation runs over a flat <code>long[]</code> distance matrix and a
+ * flat <code>int[]</code> next hop matrix (see {@link AllPairsResult}), so that no per-node maps are built. Each edge costs its {@link Edge#getWeight()}; between
+ * two nodes joined by several edges, the lightest one counts.
+ * 
+ * <p>
+ * Only edges contained in the graph and whose both ends are contained in the graph are considered.
+ * 
+ * <p>
+ * Weights may be negative. If the graph contains a cycle of negative weight, distances are meaningless: the diagonal of the distance matrix is checked as the
+ * computation goes, which stops as soon as a node is found to have a negative distance to itself, and a {@link NegativeCycleException} with the cycle is
+ * thrown.
+ * 
+ * <p>
+ * Usage: <code>AllPairsResult result = new FloydWarshall(graph).compute();</code>
+ */
+public class FloydWarshall extends Unit
+{
+	/**
+	 * Configures the computation with the {@link Graph} to process.
+	 */
+	public static class FloydWarshallConfig extends UnitConfigData
+	{
+		Graph	graph	= null;
+		
+		public FloydWarshallConfig(Graph thegraph)
+		{
+			super();
+			if(thegraph == null)
+				throw new IllegalArgumentException("the graph cannot be null");
+			this.graph = thegraph;
+		}
+	}
+	
+	/**
+	 * The largest number of nodes for which the matrix can be indexed with an int.
+	 */
+	public static final int		MAX_NODES	= 46340;
+	
+	protected static final long	INF			= AllPairsResult.UNREACHABLE;
+	
+	protected FloydWarshallConfig	config	= null;
+	
+	public FloydWarshall(Graph graph)
+	{
+		this(new FloydWarshallConfig(graph));
+	}
+	
+	public FloydWarshall(FloydWarshallConfig conf)
+	{
+		super(conf);
+		if(conf == null)
+			throw new IllegalArgumentException("null configuration");
+		this.config = conf;
+	}
+	
+	/**
+	 * @return the shortest paths between all pairs of nodes.
+	 * @throws NegativeCycleException
+	 *             if the graph contains a cycle of negative weight.
+	 */
+	public AllPairsResult compute()
+	{
+		NodeIndex index = new NodeIndex(config.graph);
+		int n = index.size();
+		if(n > MAX_NODES)
+			throw new IllegalArgumentException("graph too large for a dense matrix: " + n + " nodes");
+		long[] dist = new long[n * n];
+		int[] next = new int[n * n];
+		initialize(index, dist, next);
+		int negative = findNegativeDiagonal(dist, n, 0, n);
+		if(negative < 0)
+			negative = runKernel(dist, next, n);
+		if(negative >= 0)
+		{
+			NegativeCycleException cycle = extractCycle(index, dist, next, negative);
+			log.error(cycle.getMessage());
+			throw cycle;
+		}
+		if(nextHopsNeedRebuild())
+			rebuildNextHops(index, dist, next);
+		log.info("all-pairs shortest paths done for " + n + " nodes");
+		return new AllPairsResult(index, dist, next);
+	}
+	
+	/**
+	 * Fills the matrices with the direct edges of the graph: 0 on the diagonal, the edge cost between adjacent nodes and {@link AllPairsResult#UNREACHABLE}
+	 * elsewhere.
+	 */
+	protected void initialize(NodeIndex index, long[] dist, int[] next)
+	{
+		int n = index.size();
+		for(int i = 0; i < n; i++)
+			for(int j = 0; j < n; j++)
+			{
+				dist[i * n + j] = (i == j) ? 0 : INF;
+				next[i * n + j] = (i == j) ? i : -1;
+			}
+		for(Edge e : config.graph.getEdges())
+		{
+			int from = index.idOf(e.getFrom());
+			int to = index.idOf(e.getTo());
+			if((from < 0) || (to < 0))
+				continue;
+			long w = e.getWeight();
+			if(w < dist[from * n + to])
+			{
+				dist[from * n + to] = w;
+				next[from * n + to] = to;
+			}
+		}
+	}
+	
+	/**
+	 * The textbook triple loop, with the (i, k) cell hoisted out of the inner loop so that the inner loop streams through rows k and i. The diagonal cell of
+	 * each row is checked after the row is relaxed.
+	 * 
+	 * @return the id of a node on a negative cycle, as soon as one is found; -1 if there is none.
+	 */
+	protected int runKernel(long[] dist, int[] next, int n)
+	{
+		for(int k = 0; k < n; k++)
+		{
+			int rowK = k * n;
+			for(int i = 0; i < n; i++)
+			{
+				int rowI = i * n;
+				long dik = dist[rowI + k];
+				if(dik == INF)
+					continue;
+				int nik = next[rowI + k];
+				for(int j = 0; j < n; j++)
+				{
+					long dkj = dist[rowK + j];
+					if((dkj != INF) && (dik + dkj < dist[rowI + j]))
+					{
+						dist[rowI + j] = dik + dkj;
+						next[rowI + j] = nik;
+					}
+				}
+				if(dist[rowI + i] < 0)
+					return i;
+			}
+		}
+		return -1;
+	}
+	
+	/**
+	 * @return true if the next hops left by the kernel may not describe shortest paths, in which case they are rebuilt from the distances. The textbook kernel
+	 *         always leaves correct next hops.
+	 */
+	protected boolean nextHopsNeedRebuild()
+	{
+		return false;
+	}
+	
+	/**
+	 * Rebuilds the next hops from the final distances. For each destination j, the next hops towards j form a tree, built breadth-first backwards from j
+	 * along the tight edges (those from u to v with weight + dist(v, j) = dist(u, j)); a node is attached to the tree by the edge through which it is first
+	 * reached, so the next hops cannot loop, even along cycles of weight 0. Takes O(n m) time.
+	 */
+	protected void rebuildNextHops(NodeIndex index, long[] dist, int[] next)
+	{
+		int n = index.size();
+		CsrGraph csr = new CsrGraph(config.graph);
+		int[] toCsr = new int[n];
+		int[] fromCsr = new int[n];
+		for(int u = 0; u < n; u++)
+		{
+			toCsr[u] = csr.idOf(index.get(u));
+			fromCsr[toCsr[u]] = u;
+		}
+		int[] inOffsets = csr.getInOffsets();
+		int[] inSources = csr.getInSources();
+		long[] inWeights = csr.getInWeights();
+		int[] queue = new int[n];
+		for(int j = 0; j < n; j++)
+		{
+			for(int i = 0; i < n; i++)
+				next[i * n + j] = -1;
+			next[j * n + j] = j;
+			int head = 0, tail = 0;
+			queue[tail++] = j;
+			while(head < tail)
+			{
+				int v = queue[head++];
+				long dvj = dist[v * n + j];
+				int vc = toCsr[v];
+				for(int q = inOffsets[vc]; q < inOffsets[vc + 1]; q++)
+				{
+					int u = fromCsr[inSources[q]];
+					if((next[u * n + j] < 0) && (dist[u * n + j] != INF) && (inWeights[q] + dvj == dist[u * n + j]))
+					{
+						next[u * n + j] = v;
+						queue[tail++] = u;
+					}
+				}
+			}
+		}
+	}
+	
+	/**
+	 * @return the first node in [from, to) whose distance to itself is negative, i.e. that is on a negative cycle; -1 if there is none.
+	 */
+	protected static int findNegativeDiagonal(long[] dist, int n, int from, int to)
+	{
+		for(int i = from; i < to; i++)
+			if(dist[i * n + i] < 0)
+				return i;
+		return -1;
+	}
+	
+	/**
+	 * Builds the exception for a negative cycle through the given node.
+	 * 
+	 * <p>
+	 * The cycle is first read from the next hops towards the node, and checked against the edges of the graph. Next hops are only guaranteed to describe
+	 * shortest paths when there are no negative cycles, so if the walk does not give a negative cycle, the cycle is found again with {@link BellmanFord}.
+	 */
+	protected NegativeCycleException extractCycle(NodeIndex index, long[] dist, int[] next, int node)
+	{
+		int n = index.size();
+		CsrGraph csr = new CsrGraph(config.graph);
+		
+		// walk towards the node until a node repeats
+		int[] seenAt = new int[n];
+		Arrays.fill(seenAt, -1);
+		int[] walk = new int[n + 1];
+		int length = 0;
+		int u = node;
+		while((u >= 0) && (seenAt[u] < 0))
+		{
+			seenAt[u] = length;
+			walk[length++] = u;
+			u = next[u * n + node];
+		}
+		if(u >= 0)
+		{
+			int start = seenAt[u];
+			int[] nodes = new int[length - start];
+			int[] edges = new int[length - start];
+			long weight = 0;
+			for(int k = 0; k < nodes.length; k++)
+			{
+				nodes[k] = csr.idOf(index.get(walk[start + k]));
+				int to = csr.idOf(index.get(walk[start + (k + 1) % nodes.length]));
+				edges[k] = lightestEdge(csr, nodes[k], to);
+				if(edges[k] < 0)
+					break;
+				weight += csr.getOutWeights()[edges[k]];
+			}
+			if((edges[nodes.length - 1] >= 0) && (weight < 0))
+				return new NegativeCycleException(csr, nodes, edges);
+		}
+		log.trace("next hops do not give a negative cycle; searching with Bellman-Ford");
+		try
+		{
+			new BellmanFord(csr).potentials();
+		} catch(NegativeCycleException e)
+		{
+			return e;
+		}
+		throw new IllegalStateException("negative distance from " + index.get(node) + " to itself without a negative cycle");
+	}
+	
+	/**
+	 * @return the id of the lightest edge from u to v in the snapshot, or -1 if there is none.
+	 */
+	private static int lightestEdge(CsrGraph csr, int u, int v)
+	{
+		int[] offsets = csr.getOutOffsets();
+		int[] targets = csr.getOutTargets();
+		long[] weights = csr.getOutWeights();
+		int ret = -1;
+		for(int p = offsets[u]; p < offsets[u + 1]; p++)
+			if((targets[p] == v) && ((ret < 0) || (weights[p] < weights[ret])))
+				ret = p;
+		return ret;
+	}
+}
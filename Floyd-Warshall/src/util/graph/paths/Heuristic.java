@@ -0,0 +1,30 @@
+package util.graph.paths;
+
+import util.graph.Node;
+
+/**
+ * A lower bound on the length of the shortest path between two nodes, which guides the A* searches of {@link PointToPoint}.
+ * 
+ * <p>
+ * The estimate must be consistent: for any edge (u, v) followed by the search, <code>estimate(u, x) <= weight + estimate(v, x)</code> and
+ * <code>estimate(x, v) <= estimate(x, u) + weight</code>, as the straight-line distance is for a road network. A heuristic that is not consistent makes the
+ * returned paths longer than the shortest ones.
+ */
+public interface Heuristic
+{
+	/**
+	 * The heuristic that knows nothing: A* with it is Dijkstra's algorithm.
+	 */
+	public static final Heuristic	NONE	= new Heuristic() {
+		@Override
+		public long estimate(Node from, Node to)
+		{
+			return 0;
+		}
+	};
+	
+	/**
+	 * @return a lower bound on the length of a path from one node to the other, in the direction of the search.
+	 */
+	public long estimate(Node from, Node to);
+}
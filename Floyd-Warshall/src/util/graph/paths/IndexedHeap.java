@@ -0,0 +1,217 @@
+package util.graph.paths;
+
+import java.util.NoSuchElementException;
+
+/**
+ * Min-priority queue of int items in [0, capacity) with long keys, supporting decrease-key, without boxing.
+ * 
+ * <p>
+ * The heap is 4-ary: it is shallower than a binary heap, and the children of a node are contiguous in memory, which pays off when, as in Dijkstra's
+ * algorithm, keys are decreased more often than the minimum is removed. The position of each item in the heap is kept in an array, so that
+ * {@link #contains(int)} and {@link #decreaseKey(int, long)} take constant and logarithmic time.
+ * 
+ * <p>
+ * An instance can be reused: it is empty again after all items are polled, or after {@link #clear()}.
+ */
+public class IndexedHeap
+{
+	protected static final int	ARITY		= 4;
+	
+	protected int[]				heap		= null;
+	protected long[]			keys		= null;
+	/**
+	 * For each item, its position in the heap, or -1 if not in the heap.
+	 */
+	protected int[]				position	= null;
+	protected int				size		= 0;
+	
+	/**
+	 * @param capacity
+	 *            : items must be in [0, capacity)
+	 */
+	public IndexedHeap(int capacity)
+	{
+		heap = new int[capacity];
+		keys = new long[capacity];
+		position = new int[capacity];
+		for(int i = 0; i < capacity; i++)
+			position[i] = -1;
+	}
+	
+	public int capacity()
+	{
+		return position.length;
+	}
+	
+	public int size()
+	{
+		return size;
+	}
+	
+	public boolean isEmpty()
+	{
+		return size == 0;
+	}
+	
+	public boolean contains(int item)
+	{
+		return position[item] >= 0;
+	}
+	
+	/**
+	 * @return the key of an item in the heap.
+	 */
+	public long keyOf(int item)
+	{
+		if(position[item] < 0)
+			throw new NoSuchElementException("item not in heap: " + item);
+		return keys[item];
+	}
+	
+	/**
+	 * Adds an item that is not in the heap.
+	 */
+	public void insert(int item, long key)
+	{
+		if(position[item] >= 0)
+			throw new IllegalArgumentException("item already in heap: " + item);
+		keys[item] = key;
+		siftUp(item, size++);
+	}
+	
+	/**
+	 * Lowers the key of an item in the heap.
+	 */
+	public void decreaseKey(int item, long key)
+	{
+		int p = position[item];
+		if(p < 0)
+			throw new NoSuchElementException("item not in heap: " + item);
+		if(key > keys[item])
+			throw new IllegalArgumentException("key increased for item " + item);
+		keys[item] = key;
+		siftUp(item, p);
+	}
+	
+	/**
+	 * Inserts the item, or lowers its key if it is in the heap with a greater key.
+	 * 
+	 * @return true if the heap changed.
+	 */
+	public boolean offer(int item, long key)
+	{
+		int p = position[item];
+		if(p < 0)
+		{
+			keys[item] = key;
+			siftUp(item, size++);
+			return true;
+		}
+		if(key >= keys[item])
+			return false;
+		keys[item] = key;
+		siftUp(item, p);
+		return true;
+	}
+	
+	/**
+	 * @return the item with the least key, without removing it.
+	 */
+	public int peek()
+	{
+		if(size == 0)
+			throw new NoSuchElementException("empty heap");
+		return heap[0];
+	}
+	
+	/**
+	 * @return the least key in the heap.
+	 */
+	public long peekKey()
+	{
+		return keys[peek()];
+	}
+	
+	/**
+	 * Removes the item with the least key.
+	 * 
+	 * @return the item.
+	 */
+	public int poll()
+	{
+		if(size == 0)
+			throw new NoSuchElementException("empty heap");
+		int ret = heap[0];
+		position[ret] = -1;
+		size--;
+		if(size > 0)
+			siftDown(heap[size], 0);
+		return ret;
+	}
+	
+	/**
+	 * Removes all items.
+	 */
+	public void clear()
+	{
+		for(int p = 0; p < size; p++)
+			position[heap[p]] = -1;
+		size = 0;
+	}
+	
+	/**
+	 * Moves the item up from position p until its parent has a key not greater than its own.
+	 */
+	protected void siftUp(int item, int p)
+	{
+		long key = keys[item];
+		int i = p;
+		while(i > 0)
+		{
+			int parent = (i - 1) / ARITY;
+			int other = heap[parent];
+			if(keys[other] <= key)
+				break;
+			heap[i] = other;
+			position[other] = i;
+			i = parent;
+		}
+		heap[i] = item;
+		position[item] = i;
+	}
+	
+	/**
+	 * Moves the item down from position p until its children all have keys not less than its own.
+	 */
+	protected void siftDown(int item, int p)
+	{
+		long key = keys[item];
+		int i = p;
+		while(true)
+		{
+			int first = i * ARITY + 1;
+			if(first >= size)
+				break;
+			int last = Math.min(first + ARITY, size);
+			int least = first;
+			long leastKey = keys[heap[first]];
+			for(int c = first + 1; c < last; c++)
+			{
+				long k = keys[heap[c]];
+				if(k < leastKey)
+				{
+					least = c;
+					leastKey = k;
+				}
+			}
+			if(leastKey >= key)
+				break;
+			int other = heap[least];
+			heap[i] = other;
+			position[other] = i;
+			i = least;
+		}
+		heap[i] = item;
+		position[item] = i;
+	}
+}
@@ -0,0 +1,251 @@
+package util.graph.paths;
+
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+import util.graph.CsrGraph;
+import util.graph.Graph;
+import util.graph.NodeIndex;
+import util.logging.Unit;
+
+/**
+ * Computes all-pairs shortest paths over a directed {@link Graph} with Johnson's algorithm: one {@link Dijkstra} search from each node, over edges reweighted
+ * so that none is negative. For a sparse graph, with m edges and n nodes, this takes O(n m log n) time, against the O(n^3) of {@link FloydWarshall}.
+ * 
+ * <p>
+ * If some edge has a negative weight, node potentials are first computed with {@link BellmanFord}; a negative cycle makes the computation fail at that point,
+ * with a {@link NegativeCycleException}, before any search is run. The searches from the different sources are independent, and run in parallel on a
+ * {@link ForkJoinPool}, each writing its own row of the flat matrices of the {@link AllPairsResult}.
+ * 
+ * <p>
+ * For graphs too large for a Java array, {@link #computeInto(OffHeapMatrix, OffHeapMatrix)} writes the rows to {@link OffHeapMatrix} instances instead, in
+ * memory or mapped from files; each search then only needs a row of working memory on the heap.
+ * 
+ * <p>
+ * The result is the same as that of {@link FloydWarshall} for the distances; between several shortest paths, the next hops may differ.
+ * 
+ * <p>
+ * Usage: <code>AllPairsResult result = new Johnson(graph).compute();</code>
+ */
+public class Johnson extends Unit
+{
+	/**
+	 * Configures the computation with the {@link Graph} to process and the thread pool. If no pool is given, a pool with the configured parallelism is created
+	 * for each computation and shut down afterwards.
+	 */
+	public static class JohnsonConfig extends UnitConfigData
+	{
+		Graph			graph		= null;
+		ForkJoinPool	pool		= null;
+		int				parallelism	= Runtime.getRuntime().availableProcessors();
+		
+		public JohnsonConfig(Graph thegraph)
+		{
+			super();
+			if(thegraph == null)
+				throw new IllegalArgumentException("the graph cannot be null");
+			this.graph = thegraph;
+		}
+		
+		/**
+		 * @param forkJoinPool
+		 *            : the pool to run the searches on. The pool is not shut down by the computation.
+		 * @return the config itself, for chained calls.
+		 */
+		public JohnsonConfig setPool(ForkJoinPool forkJoinPool)
+		{
+			this.pool = forkJoinPool;
+			return this;
+		}
+		
+		/**
+		 * @param threads
+		 *            : the number of threads of the pool created by the computation; ignored if a pool is set with {@link #setPool(ForkJoinPool)}.
+		 * @return the config itself, for chained calls.
+		 */
+		public JohnsonConfig setParallelism(int threads)
+		{
+			if(threads < 1)
+				throw new IllegalArgumentException("parallelism must be positive");
+			this.parallelism = threads;
+			return this;
+		}
+	}
+	
+	/**
+	 * Runs the searches from the sources in [from, to), splitting the range in halves down to the given grain. Each leaf has its own {@link Dijkstra} and
+	 * working arrays. Each row is written either to the flat matrices or, if those are <code>null</code>, to the off-heap matrices.
+	 */
+	protected static class SourceRangeTask extends RecursiveAction
+	{
+		private static final long	serialVersionUID	= 1L;
+		
+		CsrGraph					graph;
+		long[]						potential;
+		long[]						dist;
+		int[]						next;
+		OffHeapMatrix				offHeapDist;
+		OffHeapMatrix				offHeapNext;
+		int							from;
+		int							to;
+		int							grain;
+		
+		SourceRangeTask(CsrGraph reweighted, long[] potentials, long[] distances, int[] nextHops, OffHeapMatrix offHeapDistances,
+				OffHeapMatrix offHeapNextHops, int fromSource, int toSource, int grainSize)
+		{
+			graph = reweighted;
+			potential = potentials;
+			dist = distances;
+			next = nextHops;
+			offHeapDist = offHeapDistances;
+			offHeapNext = offHeapNextHops;
+			from = fromSource;
+			to = toSource;
+			grain = grainSize;
+		}
+		
+		@Override
+		protected void compute()
+		{
+			if(to - from > grain)
+			{
+				int mid = (from + to) >>> 1;
+				invokeAll(new SourceRangeTask(graph, potential, dist, next, offHeapDist, offHeapNext, from, mid, grain), new SourceRangeTask(graph, potential,
+						dist, next, offHeapDist, offHeapNext, mid, to, grain));
+				return;
+			}
+			int n = graph.n();
+			Dijkstra dijkstra = new Dijkstra(graph);
+			long[] d = new long[n];
+			int[] pred = new int[n];
+			int[] predEdge = new int[n];
+			int[] settled = new int[n];
+			long[] rowDist = new long[n];
+			int[] rowNext = new int[n];
+			for(int s = from; s < to; s++)
+			{
+				Arrays.fill(d, INF);
+				Arrays.fill(pred, -1);
+				Arrays.fill(predEdge, -1);
+				int count = dijkstra.run(s, -1, Direction.FORWARD, d, pred, predEdge, settled);
+				Arrays.fill(rowDist, INF);
+				Arrays.fill(rowNext, -1);
+				rowDist[s] = 0;
+				rowNext[s] = s;
+				// nodes come after their predecessors, so the first hop of the predecessor is known
+				for(int k = 1; k < count; k++)
+				{
+					int v = settled[k];
+					rowDist[v] = d[v] - potential[s] + potential[v];
+					rowNext[v] = (pred[v] == s) ? v : rowNext[pred[v]];
+				}
+				if(dist != null)
+				{
+					System.arraycopy(rowDist, 0, dist, s * n, n);
+					System.arraycopy(rowNext, 0, next, s * n, n);
+				}
+				else
+				{
+					offHeapDist.setRow(s, rowDist);
+					offHeapNext.setRow(s, rowNext);
+				}
+			}
+		}
+	}
+	
+	protected static final long	INF		= AllPairsResult.UNREACHABLE;
+	
+	protected JohnsonConfig		config	= null;
+	
+	public Johnson(Graph graph)
+	{
+		this(new JohnsonConfig(graph));
+	}
+	
+	public Johnson(JohnsonConfig conf)
+	{
+		super(conf);
+		if(conf == null)
+			throw new IllegalArgumentException("null configuration");
+		this.config = conf;
+	}
+	
+	/**
+	 * @return the shortest paths between all pairs of nodes.
+	 * @throws NegativeCycleException
+	 *             if the graph contains a cycle of negative weight.
+	 */
+	public AllPairsResult compute()
+	{
+		CsrGraph csr = new CsrGraph(config.graph);
+		int n = csr.n();
+		if(n > FloydWarshall.MAX_NODES)
+			throw new IllegalArgumentException("graph too large for a dense matrix: " + n + " nodes");
+		long[] dist = new long[n * n];
+		int[] next = new int[n * n];
+		run(csr, dist, next, null, null);
+		return new AllPairsResult(csr.getIndex(), dist, next);
+	}
+	
+	/**
+	 * Computes the shortest paths between all pairs of nodes into off-heap matrices, row by row, by the node ids of the returned index. The matrices are
+	 * neither flushed nor closed.
+	 * 
+	 * @param distances
+	 *            : the n x n matrix of distances; its cells must hold the distances of the graph
+	 * @param nextHops
+	 *            : the n x n matrix of next hops, with cells of at least {@link DistanceMatrix.Width#INT} for more than 32766 nodes
+	 * @return the ids of the nodes in the matrices.
+	 * @throws NegativeCycleException
+	 *             if the graph contains a cycle of negative weight.
+	 */
+	public NodeIndex computeInto(OffHeapMatrix distances, OffHeapMatrix nextHops)
+	{
+		CsrGraph csr = new CsrGraph(config.graph);
+		int n = csr.n();
+		if((distances.size() != n) || (nextHops.size() != n))
+			throw new IllegalArgumentException("matrices do not match the " + n + " nodes of the graph");
+		run(csr, null, null, distances, nextHops);
+		return csr.getIndex();
+	}
+	
+	/**
+	 * Reweights the edges if needed and runs the searches from all sources, into either the flat or the off-heap matrices.
+	 */
+	protected void run(CsrGraph csr, long[] dist, int[] next, OffHeapMatrix offHeapDist, OffHeapMatrix offHeapNext)
+	{
+		int n = csr.n();
+		long[] potential = new long[n];
+		CsrGraph reweighted = csr;
+		if(hasNegativeWeights(csr))
+		{
+			potential = new BellmanFord(csr).potentials();
+			reweighted = csr.reweighted(potential);
+			log.trace("edges reweighted");
+		}
+		
+		ForkJoinPool pool = config.pool;
+		if(pool == null)
+			pool = new ForkJoinPool(config.parallelism);
+		try
+		{
+			int grain = Math.max(1, n / (8 * pool.getParallelism()));
+			pool.invoke(new SourceRangeTask(reweighted, potential, dist, next, offHeapDist, offHeapNext, 0, n, grain));
+		} finally
+		{
+			if(config.pool == null)
+				pool.shutdown();
+		}
+		log.info("all-pairs shortest paths done for " + n + " nodes and " + csr.m() + " edges");
+	}
+	
+	private static boolean hasNegativeWeights(CsrGraph csr)
+	{
+		long[] weights = csr.getOutWeights();
+		for(int p = 0; p < csr.m(); p++)
+			if(weights[p] < 0)
+				return true;
+		return false;
+	}
+}
@@ -0,0 +1,239 @@
+package util.graph.paths;
+
+import java.util.Arrays;
+import java.util.List;
+
+import util.graph.CsrGraph;
+import util.graph.Graph;
+import util.graph.Node;
+
+/**
+ * Computes hop distances from many sources at once, with a multi-source bit-parallel breadth-first search (MS-BFS, Then et al., 2014) over a
+ * {@link CsrGraph}.
+ * 
+ * <p>
+ * Sources are processed in batches of 64 times a configured number of words. Each node carries, for the current batch, one bit per source in three bitsets:
+ * the sources that have already reached it, the sources whose frontier contains it at the current level, and those of the next level. A level scans the
+ * adjacency of each node that is in some frontier once, and propagates all its frontier bits to each neighbor with a few word operations, so that the
+ * searches of all the sources of a batch share the same memory traffic, instead of each scanning the graph on its own.
+ * 
+ * <p>
+ * The distances are written to a flat, row-major <code>int[]</code> matrix with one row per source, {@link BreadthFirstSearch#UNREACHED} for the nodes a
+ * source cannot reach, or, for all pairs, to a {@link DistanceMatrix} of byte cells, which widens if some distance does not fit. The search keeps no state between calls, so an instance can serve several threads at once.
+ * 
+ * <p>
+ * Usage: <code>int[] hops = new MultiSourceBfs(graph).allPairs(Direction.UNDIRECTED);</code>, then <code>hops[i * n + j]</code>.
+ */
+public class MultiSourceBfs
+{
+	protected CsrGraph	graph	= null;
+	/**
+	 * The number of 64-bit words per node, that is the number of sources of a batch divided by 64.
+	 */
+	protected int		words	= 4;
+	
+	/**
+	 * Takes a snapshot of the graph; later changes to the graph are not seen.
+	 */
+	public MultiSourceBfs(Graph graph)
+	{
+		this(new CsrGraph(graph));
+	}
+	
+	public MultiSourceBfs(CsrGraph csr)
+	{
+		if(csr == null)
+			throw new IllegalArgumentException("the graph cannot be null");
+		this.graph = csr;
+	}
+	
+	public CsrGraph getGraph()
+	{
+		return graph;
+	}
+	
+	/**
+	 * @param wordsPerNode
+	 *            : the number of 64-bit words kept per node and per bitset; a batch runs 64 times as many sources. Wider batches share more of the scans, but
+	 *            take 3 * 8 * wordsPerNode bytes per node.
+	 * @return the search itself, for chained calls.
+	 */
+	public MultiSourceBfs setWords(int wordsPerNode)
+	{
+		if(wordsPerNode < 1)
+			throw new IllegalArgumentException("at least one word per node is needed");
+		this.words = wordsPerNode;
+		return this;
+	}
+	
+	/**
+	 * @return the hop distances between all pairs of nodes, as an n x n row-major matrix by node id.
+	 */
+	public int[] allPairs(Direction direction)
+	{
+		int n = graph.n();
+		if(n > FloydWarshall.MAX_NODES)
+			throw new IllegalArgumentException("graph too large for a dense matrix: " + n + " nodes");
+		int[] sources = new int[n];
+		for(int u = 0; u < n; u++)
+			sources[u] = u;
+		return distances(sources, direction);
+	}
+	
+	/**
+	 * @return the hop distances between all pairs of nodes, by node id, in a matrix that starts with byte cells and only widens if a distance does not fit.
+	 */
+	public DistanceMatrix allPairsMatrix(Direction direction)
+	{
+		int n = graph.n();
+		int[] sources = new int[n];
+		for(int u = 0; u < n; u++)
+			sources[u] = u;
+		DistanceMatrix ret = new DistanceMatrix(n, DistanceMatrix.Width.BYTE);
+		run(sources, direction, null, ret);
+		return ret;
+	}
+	
+	public int[] distances(List<Node> sources, Direction direction)
+	{
+		int[] ids = new int[sources.size()];
+		for(int k = 0; k < ids.length; k++)
+		{
+			ids[k] = graph.idOf(sources.get(k));
+			if(ids[k] < 0)
+				throw new IllegalArgumentException("node not in graph: " + sources.get(k));
+		}
+		return distances(ids, direction);
+	}
+	
+	/**
+	 * @param sources
+	 *            : the ids of the source nodes; a node may appear more than once
+	 * @param direction
+	 *            : the edges to follow
+	 * @return the hop distances from each source to each node, as a row-major matrix with one row of n distances per source, in the order of the sources.
+	 */
+	public int[] distances(int[] sources, Direction direction)
+	{
+		int n = graph.n();
+		for(int s : sources)
+			if((s < 0) || (s >= n))
+				throw new IllegalArgumentException("source out of range: " + s);
+		if((long)sources.length * n > Integer.MAX_VALUE)
+			throw new IllegalArgumentException("too many sources for a single matrix: " + sources.length + " x " + n);
+		int[] dist = new int[sources.length * n];
+		Arrays.fill(dist, BreadthFirstSearch.UNREACHED);
+		run(sources, direction, dist, null);
+		return dist;
+	}
+	
+	/**
+	 * Runs the searches batch by batch, writing the distances either to a flat matrix or to a {@link DistanceMatrix}, one row per source.
+	 */
+	protected void run(int[] sources, Direction direction, int[] dist, DistanceMatrix matrix)
+	{
+		int n = graph.n();
+		int batch = 64 * words;
+		long[] seen = new long[n * words];
+		long[] visit = new long[n * words];
+		long[] visitNext = new long[n * words];
+		for(int first = 0; first < sources.length; first += batch)
+		{
+			if(first > 0)
+			{
+				Arrays.fill(seen, 0);
+				Arrays.fill(visit, 0);
+			}
+			runBatch(sources, first, Math.min(sources.length, first + batch), direction, dist, matrix, seen, visit, visitNext);
+		}
+	}
+	
+	/**
+	 * Runs the searches from the sources in [from, to), which must be at most 64 * {@link #words}; the bitsets must be empty.
+	 */
+	protected void runBatch(int[] sources, int from, int to, Direction direction, int[] dist, DistanceMatrix matrix, long[] seen, long[] visit,
+			long[] visitNext)
+	{
+		int n = graph.n();
+		int w = words;
+		for(int i = from; i < to; i++)
+		{
+			int s = sources[i];
+			int word = s * w + ((i - from) >>> 6);
+			long bit = 1L << ((i - from) & 63);
+			seen[word] |= bit;
+			visit[word] |= bit;
+			if(matrix == null)
+				dist[i * n + s] = 0;
+			else
+				matrix.set(i, s, 0);
+		}
+		boolean forward = (direction != Direction.BACKWARD);
+		boolean backward = (direction != Direction.FORWARD);
+		boolean active = true;
+		for(int level = 1; active; level++)
+		{
+			active = false;
+			for(int v = 0; v < n; v++)
+			{
+				int base = v * w;
+				boolean inFrontier = false;
+				for(int k = 0; k < w; k++)
+					if(visit[base + k] != 0)
+					{
+						inFrontier = true;
+						break;
+					}
+				if(!inFrontier)
+					continue;
+				if(forward)
+					active |= spread(v, graph.getOutOffsets(), graph.getOutTargets(), level, from, dist, matrix, seen, visit, visitNext);
+				if(backward)
+					active |= spread(v, graph.getInOffsets(), graph.getInSources(), level, from, dist, matrix, seen, visit, visitNext);
+			}
+			long[] swap = visit;
+			visit = visitNext;
+			visitNext = swap;
+			Arrays.fill(visitNext, 0);
+		}
+	}
+	
+	/**
+	 * Propagates the frontier bits of v to its neighbors in one CSR form, recording the distance of each source that reaches a neighbor for the first time.
+	 * 
+	 * @return true if some neighbor was reached by a new source.
+	 */
+	private boolean spread(int v, int[] offsets, int[] others, int level, int from, int[] dist, DistanceMatrix matrix, long[] seen, long[] visit,
+			long[] visitNext)
+	{
+		int n = graph.n();
+		int w = words;
+		int base = v * w;
+		boolean ret = false;
+		for(int p = offsets[v]; p < offsets[v + 1]; p++)
+		{
+			int u = others[p];
+			int ub = u * w;
+			for(int k = 0; k < w; k++)
+			{
+				long reached = visit[base + k] & ~seen[ub + k];
+				if(reached == 0)
+					continue;
+				seen[ub + k] |= reached;
+				visitNext[ub + k] |= reached;
+				ret = true;
+				int row = from + (k << 6);
+				while(reached != 0)
+				{
+					int i = row + Long.numberOfTrailingZeros(reached);
+					if(matrix == null)
+						dist[i * n + u] = level;
+					else
+						matrix.set(i, u, level);
+					reached &= reached - 1;
+				}
+			}
+		}
+		return ret;
+	}
+}
@@ -0,0 +1,104 @@
+package util.graph.paths;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import util.graph.CsrGraph;
+import util.graph.Edge;
+import util.graph.Node;
+
+/**
+ * Thrown by shortest path computations when the graph contains a cycle of negative total weight, which makes the distances between the nodes that reach it
+ * meaningless.
+ * 
+ * <p>
+ * The exception carries one such cycle, as the ids of its nodes and edges in a {@link CsrGraph} and, if the snapshot is attached to a graph, as {@link Node}
+ * and {@link Edge} instances. The edge k of the cycle goes from node k to node k + 1 (to node 0 for the last edge).
+ */
+public class NegativeCycleException extends IllegalArgumentException
+{
+	private static final long	serialVersionUID	= 1L;
+	
+	protected int[]				nodeIds				= null;
+	protected int[]				edgeIds				= null;
+	protected long				weight				= 0;
+	protected List<Node>		nodes				= null;
+	protected List<Edge>		edges				= null;
+	
+	/**
+	 * @param graph
+	 *            : the graph that contains the cycle
+	 * @param cycleNodes
+	 *            : the ids of the nodes of the cycle, in order
+	 * @param cycleEdges
+	 *            : the ids of the edges of the cycle, in order
+	 */
+	public NegativeCycleException(CsrGraph graph, int[] cycleNodes, int[] cycleEdges)
+	{
+		super(describe(graph, cycleNodes, cycleEdges));
+		nodeIds = cycleNodes;
+		edgeIds = cycleEdges;
+		long[] weights = graph.getOutWeights();
+		for(int e : cycleEdges)
+			weight += weights[e];
+		if(graph.isAttached())
+		{
+			nodes = new ArrayList<Node>(cycleNodes.length);
+			for(int u : cycleNodes)
+				nodes.add(graph.getNode(u));
+			edges = new ArrayList<Edge>(cycleEdges.length);
+			for(int e : cycleEdges)
+				edges.add(graph.getEdge(e));
+			nodes = Collections.unmodifiableList(nodes);
+			edges = Collections.unmodifiableList(edges);
+		}
+	}
+	
+	private static String describe(CsrGraph graph, int[] cycleNodes, int[] cycleEdges)
+	{
+		long[] weights = graph.getOutWeights();
+		long total = 0;
+		for(int e : cycleEdges)
+			total += weights[e];
+		StringBuilder ret = new StringBuilder("negative cycle of weight " + total + ":");
+		for(int u : cycleNodes)
+			ret.append(" ").append(graph.getNodeLabel(u)).append(" ->");
+		ret.append(" ").append(graph.getNodeLabel(cycleNodes[0]));
+		return ret.toString();
+	}
+	
+	/**
+	 * @return the nodes of the cycle, in order; <code>null</code> if the graph was a detached snapshot.
+	 */
+	public List<Node> getCycle()
+	{
+		return nodes;
+	}
+	
+	/**
+	 * @return the edges of the cycle, in order; <code>null</code> if the graph was a detached snapshot.
+	 */
+	public List<Edge> getCycleEdges()
+	{
+		return edges;
+	}
+	
+	public int[] getCycleNodeIds()
+	{
+		return nodeIds;
+	}
+	
+	public int[] getCycleEdgeIds()
+	{
+		return edgeIds;
+	}
+	
+	/**
+	 * @return the total weight of the cycle, which is negative.
+	 */
+	public long getWeight()
+	{
+		return weight;
+	}
+}
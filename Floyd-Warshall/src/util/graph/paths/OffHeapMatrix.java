@@ -0,0 +1,410 @@
+package util.graph.paths;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import util.graph.paths.DistanceMatrix.Width;
+import util.logging.Log;
+
+/**
+ * A dense n x n matrix of distances or next hops, stored outside the Java heap, for all-pairs results too large for a Java array or for the garbage collector.
+ * 
+ * <p>
+ * The cells are kept in direct {@link ByteBuffer}s of at most 1 GiB each, indexed by a <code>long</code> offset, so that the matrix is not limited to the 2^31
+ * cells of an array; a cell never straddles two buffers. The cells have one of the widths of {@link DistanceMatrix}, with the same sentinel for
+ * {@link DistanceMatrix#UNREACHABLE}; unlike {@link DistanceMatrix}, the matrix does not widen, and rejects the values that do not fit.
+ * 
+ * <p>
+ * The buffers are either allocated in memory ({@link #allocate(int, Width)}) or mapped from a file ({@link #create(File, int, Width)}), in which case the
+ * matrix is written to the file as it changes and can be opened again later ({@link #open(File)}). The file starts with a header of {@link #HEADER_SIZE}
+ * bytes: the magic bytes "FWOM", the format version (one byte), the cell width in bytes (one byte), two unused bytes and n (eight bytes); the cells follow,
+ * row by row, little-endian.
+ * 
+ * <p>
+ * The memory is held until {@link #close()}, which frees the buffers and unmaps the file at once through the cleaner of the direct buffers:
+ * <code>sun.misc.Unsafe.invokeCleaner</code> on Java 9 and later, the <code>cleaner()</code> of the buffer before. Where neither is accessible (a JVM
+ * without the <code>jdk.unsupported</code> module, for instance), close() does not release the memory right away: the buffers and mappings stay until they
+ * are garbage collected, which is logged once, and a file created again after it is closed may still be mapped by the old matrix. The matrix cannot be used
+ * after it is closed. Different threads may write different cells at once.
+ * 
+ * <p>
+ * Usage: <code>OffHeapMatrix dist = OffHeapMatrix.create(file, n, Width.LONG);</code>, fill it, then <code>dist.close()</code>.
+ */
+public class OffHeapMatrix implements Closeable
+{
+	public static final byte[]	MAGIC			= { 'F', 'W', 'O', 'M' };
+	public static final int		VERSION			= 1;
+	/**
+	 * The size of the file header, which keeps the cells aligned on pages.
+	 */
+	public static final int		HEADER_SIZE		= 4096;
+	
+	/**
+	 * Each buffer holds 2^SEGMENT_SHIFT bytes, except the last one.
+	 */
+	protected static final int	SEGMENT_SHIFT	= 30;
+	protected static final long	SEGMENT_MASK	= (1L << SEGMENT_SHIFT) - 1;
+	
+	/**
+	 * The instance of <code>sun.misc.Unsafe</code> and its <code>invokeCleaner</code> method, on Java 9 and later; <code>null</code> otherwise.
+	 */
+	private static final Object			UNSAFE;
+	private static final Method			INVOKE_CLEANER;
+	private static final AtomicBoolean	FALLBACK_LOGGED	= new AtomicBoolean(false);
+	
+	static
+	{
+		Object unsafe = null;
+		Method invokeCleaner = null;
+		try
+		{
+			Class<?> unsafeClass = Class.forName("sun.misc.Unsafe");
+			invokeCleaner = unsafeClass.getMethod("invokeCleaner", ByteBuffer.class);
+			Field field = unsafeClass.getDeclaredField("theUnsafe");
+			field.setAccessible(true);
+			unsafe = field.get(null);
+		} catch(Exception e)
+		{
+			// before Java 9, or not accessible
+			unsafe = null;
+		}
+		UNSAFE = unsafe;
+		INVOKE_CLEANER = (unsafe == null) ? null : invokeCleaner;
+	}
+	
+	protected int				n				= 0;
+	protected Width				width			= null;
+	protected ByteBuffer[]		segments		= null;
+	/**
+	 * The mapped file, or <code>null</code> for a matrix in memory.
+	 */
+	protected RandomAccessFile	file			= null;
+	
+	protected OffHeapMatrix(int size, Width cellWidth)
+	{
+		if(size < 0)
+			throw new IllegalArgumentException("negative size: " + size);
+		if(cellWidth == null)
+			throw new IllegalArgumentException("null width");
+		this.n = size;
+		this.width = cellWidth;
+	}
+	
+	/**
+	 * @return a matrix in direct memory in which no node reaches any other, nor itself.
+	 */
+	public static OffHeapMatrix allocate(int size, Width cellWidth)
+	{
+		OffHeapMatrix ret = new OffHeapMatrix(size, cellWidth);
+		long bytes = ret.byteSize();
+		int count = (int)((bytes + SEGMENT_MASK) >>> SEGMENT_SHIFT);
+		ret.segments = new ByteBuffer[count];
+		for(int s = 0; s < count; s++)
+			ret.segments[s] = ByteBuffer.allocateDirect((int)Math.min(SEGMENT_MASK + 1, bytes - ((long)s << SEGMENT_SHIFT))).order(ByteOrder.LITTLE_ENDIAN);
+		ret.fill(DistanceMatrix.UNREACHABLE);
+		return ret;
+	}
+	
+	/**
+	 * Creates the file, replacing any previous content, and maps it.
+	 * 
+	 * @return a matrix in which no node reaches any other, nor itself.
+	 * @throws IOException
+	 *             if the file cannot be written.
+	 */
+	public static OffHeapMatrix create(File path, int size, Width cellWidth) throws IOException
+	{
+		OffHeapMatrix ret = new OffHeapMatrix(size, cellWidth);
+		RandomAccessFile raf = new RandomAccessFile(path, "rw");
+		try
+		{
+			raf.setLength(0);
+			raf.setLength(HEADER_SIZE + ret.byteSize());
+			byte[] header = new byte[16];
+			System.arraycopy(MAGIC, 0, header, 0, MAGIC.length);
+			header[4] = VERSION;
+			header[5] = (byte)cellWidth.bytes();
+			ByteBuffer.wrap(header).order(ByteOrder.LITTLE_ENDIAN).putLong(8, size);
+			raf.write(header);
+			ret.map(raf);
+		} catch(IOException e)
+		{
+			raf.close();
+			throw e;
+		}
+		ret.fill(DistanceMatrix.UNREACHABLE);
+		return ret;
+	}
+	
+	/**
+	 * Maps a file written by a matrix created with {@link #create(File, int, Width)}; changes are written back to the file.
+	 * 
+	 * @throws IOException
+	 *             if the file cannot be read, or is not a matrix file.
+	 */
+	public static OffHeapMatrix open(File path) throws IOException
+	{
+		RandomAccessFile raf = new RandomAccessFile(path, "rw");
+		try
+		{
+			byte[] header = new byte[16];
+			raf.readFully(header);
+			if(!Arrays.equals(Arrays.copyOf(header, MAGIC.length), MAGIC))
+				throw new IOException("not a matrix file: " + path);
+			if(header[4] != VERSION)
+				throw new IOException("unsupported matrix file version " + header[4]);
+			Width cellWidth = null;
+			for(Width w : Width.values())
+				if(w.bytes() == header[5])
+					cellWidth = w;
+			long size = ByteBuffer.wrap(header).order(ByteOrder.LITTLE_ENDIAN).getLong(8);
+			if((cellWidth == null) || (size < 0) || (size > Integer.MAX_VALUE))
+				throw new IOException("corrupt matrix header in " + path);
+			OffHeapMatrix ret = new OffHeapMatrix((int)size, cellWidth);
+			if(raf.length() != HEADER_SIZE + ret.byteSize())
+				throw new IOException("truncated matrix file: " + path);
+			ret.map(raf);
+			return ret;
+		} catch(IOException e)
+		{
+			raf.close();
+			throw e;
+		}
+	}
+	
+	private void map(RandomAccessFile raf) throws IOException
+	{
+		FileChannel channel = raf.getChannel();
+		long bytes = byteSize();
+		int count = (int)((bytes + SEGMENT_MASK) >>> SEGMENT_SHIFT);
+		segments = new ByteBuffer[count];
+		for(int s = 0; s < count; s++)
+		{
+			long start = (long)s << SEGMENT_SHIFT;
+			segments[s] = channel.map(FileChannel.MapMode.READ_WRITE, HEADER_SIZE + start, Math.min(SEGMENT_MASK + 1, bytes - start)).order(
+					ByteOrder.LITTLE_ENDIAN);
+		}
+		file = raf;
+	}
+	
+	public int size()
+	{
+		return n;
+	}
+	
+	public Width getWidth()
+	{
+		return width;
+	}
+	
+	/**
+	 * @return the number of bytes taken by the cells.
+	 */
+	public long byteSize()
+	{
+		return (long)n * n * width.bytes();
+	}
+	
+	public boolean isMapped()
+	{
+		return file != null;
+	}
+	
+	/**
+	 * @return the value of the cell (i, j); {@link DistanceMatrix#UNREACHABLE} for the sentinel.
+	 */
+	public long get(int i, int j)
+	{
+		long offset = ((long)i * n + j) * width.bytes();
+		ByteBuffer segment = segment(offset);
+		int position = (int)(offset & SEGMENT_MASK);
+		long cell;
+		switch(width)
+		{
+		case BYTE:
+			cell = segment.get(position);
+			break;
+		case SHORT:
+			cell = segment.getShort(position);
+			break;
+		case INT:
+			cell = segment.getInt(position);
+			break;
+		default:
+			return segment.getLong(position);
+		}
+		return (cell == width.sentinel) ? DistanceMatrix.UNREACHABLE : cell;
+	}
+	
+	/**
+	 * @throws IllegalArgumentException
+	 *             if the value does not fit the width of the cells.
+	 */
+	public void set(int i, int j, long value)
+	{
+		if(!width.fits(value))
+			throw new IllegalArgumentException("value " + value + " does not fit a cell of " + width);
+		long offset = ((long)i * n + j) * width.bytes();
+		ByteBuffer segment = segment(offset);
+		int position = (int)(offset & SEGMENT_MASK);
+		long cell = (value == DistanceMatrix.UNREACHABLE) ? width.sentinel : value;
+		switch(width)
+		{
+		case BYTE:
+			segment.put(position, (byte)cell);
+			break;
+		case SHORT:
+			segment.putShort(position, (short)cell);
+			break;
+		case INT:
+			segment.putInt(position, (int)cell);
+			break;
+		default:
+			segment.putLong(position, cell);
+		}
+	}
+	
+	/**
+	 * Sets the row i to the given values.
+	 */
+	public void setRow(int i, long[] values)
+	{
+		if(values.length != n)
+			throw new IllegalArgumentException("a row has " + n + " cells, not " + values.length);
+		for(int j = 0; j < n; j++)
+			set(i, j, values[j]);
+	}
+	
+	public void setRow(int i, int[] values)
+	{
+		if(values.length != n)
+			throw new IllegalArgumentException("a row has " + n + " cells, not " + values.length);
+		for(int j = 0; j < n; j++)
+			set(i, j, values[j]);
+	}
+	
+	/**
+	 * Sets all the cells to the same value.
+	 */
+	public void fill(long value)
+	{
+		if(!width.fits(value))
+			throw new IllegalArgumentException("value " + value + " does not fit a cell of " + width);
+		long cell = (value == DistanceMatrix.UNREACHABLE) ? width.sentinel : value;
+		checkOpen();
+		for(ByteBuffer segment : segments)
+		{
+			int limit = segment.capacity();
+			for(int position = 0; position < limit; position += width.bytes())
+				switch(width)
+				{
+				case BYTE:
+					segment.put(position, (byte)cell);
+					break;
+				case SHORT:
+					segment.putShort(position, (short)cell);
+					break;
+				case INT:
+					segment.putInt(position, (int)cell);
+					break;
+				default:
+					segment.putLong(position, cell);
+				}
+		}
+	}
+	
+	/**
+	 * Writes the changes of a mapped matrix to the file; does nothing for a matrix in memory.
+	 */
+	public void flush()
+	{
+		checkOpen();
+		if(file != null)
+			for(ByteBuffer segment : segments)
+				((MappedByteBuffer)segment).force();
+	}
+	
+	/**
+	 * Flushes a mapped matrix, then frees the buffers and closes the file.
+	 * 
+	 * @throws IOException
+	 *             if the file cannot be closed.
+	 */
+	@Override
+	public void close() throws IOException
+	{
+		if(segments == null)
+			return;
+		flush();
+		ByteBuffer[] released = segments;
+		segments = null;
+		for(ByteBuffer segment : released)
+			release(segment);
+		if(file != null)
+			file.close();
+		file = null;
+	}
+	
+	/**
+	 * Frees a direct buffer, or unmaps a mapped one, through its cleaner: with <code>sun.misc.Unsafe.invokeCleaner</code> on Java 9 and later, and with the
+	 * <code>cleaner()</code> of the buffer before. Where neither is accessible, the buffer is freed when it is garbage collected, and this is logged once. The
+	 * buffer must not be used afterwards.
+	 */
+	static void release(ByteBuffer buffer)
+	{
+		if((buffer == null) || !buffer.isDirect())
+			return;
+		if(INVOKE_CLEANER != null)
+			try
+			{
+				INVOKE_CLEANER.invoke(UNSAFE, buffer);
+				return;
+			} catch(Exception e)
+			{
+				logFallback(e);
+				return;
+			}
+		try
+		{
+			Method cleanerMethod = buffer.getClass().getMethod("cleaner");
+			cleanerMethod.setAccessible(true);
+			Object cleaner = cleanerMethod.invoke(buffer);
+			if(cleaner != null)
+				cleaner.getClass().getMethod("clean").invoke(cleaner);
+		} catch(Exception e)
+		{
+			logFallback(e);
+		}
+	}
+	
+	private static void logFallback(Exception cause)
+	{
+		if(!FALLBACK_LOGGED.compareAndSet(false, true))
+			return;
+		String name = OffHeapMatrix.class.getSimpleName();
+		Log.getLogger(name).trace("direct buffers cannot be freed explicitly on this JVM (" + cause + "); they are left to the garbage collector");
+		Log.exitLogger(name);
+	}
+	
+	private ByteBuffer segment(long offset)
+	{
+		checkOpen();
+		return segments[(int)(offset >>> SEGMENT_SHIFT)];
+	}
+	
+	private void checkOpen()
+	{
+		if(segments == null)
+			throw new IllegalStateException("matrix closed");
+	}
+}
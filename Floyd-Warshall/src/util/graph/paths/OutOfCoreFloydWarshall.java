@@ -0,0 +1,373 @@
+package util.graph.paths;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.Arrays;
+
+import util.graph.CsrGraph;
+import util.graph.Graph;
+import util.logging.Unit;
+
+/**
+ * Computes the distances between all pairs of nodes of a {@link Graph} with a blocked Floyd-Warshall algorithm whose matrix stays on disk, for graphs whose
+ * distance matrix does not fit in memory.
+ * 
+ * <p>
+ * The matrix is kept as one file per tile, in a directory on local disk (see {@link TiledDistances} for the layout). The pivots are taken one block of tiles
+ * at a time, in the three phases of {@link BlockedFloydWarshall}: the diagonal tile, then the tiles on the pivot row and column, then all others. Each tile
+ * that is updated is read into a heap copy, relaxed and written back only if some distance changed; the tiles it is relaxed against are read as well. The
+ * files are read and written with positional reads and writes through one reused direct buffer, so no file stays mapped or open between two tiles. The
+ * diagonal tile stays in memory during the second phase; in the third phase, the tiles are updated row by row of tiles, with the pivot column tile of the row
+ * read once, and the rows swept alternately left to right and right to left so that the pivot row tile at the turn is kept. With T tiles on a side, each
+ * block of pivots reads every tile once and the pivot row tiles T times each, so over the T blocks, each tile is read O(T) = O(n / side) times, and at most
+ * four tiles are in memory at once.
+ * 
+ * <p>
+ * Each tile written is forced to disk before it is closed, so after each block of pivots, all updated tiles are on disk when a checkpoint file records the
+ * number of blocks completed. A computation started again over the same directory and the same graph resumes after the last completed block; the checkpoint
+ * also records n, the side of the tiles and a fingerprint of the edges, and a directory left by a different computation is started over. Distances only ever
+ * decrease to lengths of actual paths, so running a block again over tiles partly updated by an interrupted run gives the same result.
+ * 
+ * <p>
+ * Only distances are computed. If some edge has a negative weight, the graph is first checked for negative cycles with {@link BellmanFord}, which throws a
+ * {@link NegativeCycleException} before any tile is written.
+ * 
+ * <p>
+ * Usage: <code>TiledDistances dist = new OutOfCoreFloydWarshall(graph, directory).compute();</code>, then <code>dist.get(i, j)</code>.
+ */
+public class OutOfCoreFloydWarshall extends Unit
+{
+	/**
+	 * Configures the computation with the {@link Graph} to process, the directory of the tile files and the side of the tiles.
+	 */
+	public static class OutOfCoreFloydWarshallConfig extends UnitConfigData
+	{
+		Graph	graph		= null;
+		File	directory	= null;
+		int		tileSize	= DEFAULT_TILE_SIZE;
+		
+		public OutOfCoreFloydWarshallConfig(Graph thegraph, File tileDirectory)
+		{
+			super();
+			if(thegraph == null)
+				throw new IllegalArgumentException("the graph cannot be null");
+			if(tileDirectory == null)
+				throw new IllegalArgumentException("the directory cannot be null");
+			this.graph = thegraph;
+			this.directory = tileDirectory;
+		}
+		
+		/**
+		 * @param size
+		 *            : the side of a tile, in matrix cells; a tile file takes <code>8 * size * size</code> bytes, 8 MB for the default of 1024. Larger tiles
+		 *            mean fewer reads, but four of them are held in memory at once.
+		 * @return the config itself, for chained calls.
+		 */
+		public OutOfCoreFloydWarshallConfig setTileSize(int size)
+		{
+			if((size < 1) || (size > MAX_TILE_SIZE))
+				throw new IllegalArgumentException("tile size out of [1, " + MAX_TILE_SIZE + "]: " + size);
+			this.tileSize = size;
+			return this;
+		}
+	}
+	
+	public static final int		DEFAULT_TILE_SIZE	= 1024;
+	/**
+	 * The largest side of a tile that can be held in one array.
+	 */
+	public static final int		MAX_TILE_SIZE		= 16383;
+	public static final String	CHECKPOINT			= "checkpoint";
+	public static final byte[]	MAGIC				= { 'F', 'W', 'O', 'C' };
+	public static final int		VERSION				= 1;
+	
+	protected static final long	INF					= AllPairsResult.UNREACHABLE;
+	
+	protected OutOfCoreFloydWarshallConfig	config	= null;
+	/**
+	 * The direct buffer through which the tile files are read and written, during {@link #compute()}.
+	 */
+	protected ByteBuffer					buffer	= null;
+	
+	public OutOfCoreFloydWarshall(Graph graph, File directory)
+	{
+		this(new OutOfCoreFloydWarshallConfig(graph, directory));
+	}
+	
+	public OutOfCoreFloydWarshall(OutOfCoreFloydWarshallConfig conf)
+	{
+		super(conf);
+		if(conf == null)
+			throw new IllegalArgumentException("null configuration");
+		this.config = conf;
+	}
+	
+	/**
+	 * Runs the computation, or resumes it from the checkpoint in the directory.
+	 * 
+	 * @return the distances, read from the tile files.
+	 * @throws IOException
+	 *             if the tiles or the checkpoint cannot be read or written.
+	 * @throws NegativeCycleException
+	 *             if the graph contains a cycle of negative weight.
+	 */
+	public TiledDistances compute() throws IOException
+	{
+		CsrGraph csr = new CsrGraph(config.graph);
+		int n = csr.n();
+		if(hasNegativeWeights(csr))
+			new BellmanFord(csr).potentials();
+		File dir = config.directory;
+		if(!dir.isDirectory() && !dir.mkdirs())
+			throw new IOException("cannot create directory " + dir);
+		int side = Math.max(1, Math.min(config.tileSize, n));
+		int tiles = (n + side - 1) / side;
+		long fingerprint = fingerprint(csr);
+		buffer = TiledDistances.ioBuffer(side);
+		try
+		{
+			return computeTiles(csr, side, tiles, fingerprint);
+		} finally
+		{
+			OffHeapMatrix.release(buffer);
+			buffer = null;
+		}
+	}
+	
+	/**
+	 * Initializes the tiles unless the checkpoint matches, then runs the remaining blocks of pivots.
+	 */
+	private TiledDistances computeTiles(CsrGraph csr, int side, int tiles, long fingerprint) throws IOException
+	{
+		int n = csr.n();
+		File dir = config.directory;
+		int done = readCheckpoint(n, side, fingerprint);
+		if(done < 0)
+		{
+			// a stale checkpoint must not survive a crash during the initialization
+			new File(dir, CHECKPOINT).delete();
+			initialize(csr, side, tiles);
+			writeCheckpoint(n, side, fingerprint, 0);
+			done = 0;
+			log.trace(tiles * tiles + " tiles initialized");
+		}
+		else if(done > 0)
+			log.info("resuming after " + done + " of " + tiles + " blocks of pivots");
+		
+		long[] pivot = new long[side * side];
+		long[] column = new long[side * side];
+		long[] row = new long[side * side];
+		long[] work = new long[side * side];
+		for(int kb = done; kb < tiles; kb++)
+		{
+			runBlock(kb, side, tiles, pivot, column, row, work);
+			writeCheckpoint(n, side, fingerprint, kb + 1);
+			log.trace("block of pivots " + (kb + 1) + " of " + tiles + " done");
+		}
+		log.info("out-of-core all-pairs distances done for " + n + " nodes");
+		return new TiledDistances(dir, csr.getIndex(), side);
+	}
+	
+	/**
+	 * Writes all tiles with the direct edges of the graph: 0 on the diagonal, the lightest edge between adjacent nodes and {@link #INF} elsewhere.
+	 */
+	protected void initialize(CsrGraph csr, int side, int tiles) throws IOException
+	{
+		int n = csr.n();
+		int[] offsets = csr.getOutOffsets();
+		int[] targets = csr.getOutTargets();
+		long[] weights = csr.getOutWeights();
+		long[] work = new long[side * side];
+		for(int bi = 0; bi < tiles; bi++)
+			for(int bj = 0; bj < tiles; bj++)
+			{
+				Arrays.fill(work, INF);
+				int rowStart = bi * side, columnStart = bj * side;
+				for(int u = rowStart; u < Math.min(n, rowStart + side); u++)
+				{
+					if((u >= columnStart) && (u < columnStart + side))
+						work[(u - rowStart) * side + (u - columnStart)] = 0;
+					for(int p = offsets[u]; p < offsets[u + 1]; p++)
+					{
+						int v = targets[p];
+						if((v < columnStart) || (v >= columnStart + side))
+							continue;
+						int cell = (u - rowStart) * side + (v - columnStart);
+						work[cell] = Math.min(work[cell], weights[p]);
+					}
+				}
+				TiledDistances.write(TiledDistances.tileFile(config.directory, bi, bj), side, work, buffer);
+			}
+	}
+	
+	/**
+	 * Relaxes all tiles with the pivots of the block kb.
+	 */
+	protected void runBlock(int kb, int side, int tiles, long[] pivot, long[] column, long[] row, long[] work) throws IOException
+	{
+		// phase 1: the diagonal tile, kept for phase 2
+		update(kb, kb, null, null, side, pivot);
+		// phase 2: the pivot row and the pivot column
+		for(int t = 0; t < tiles; t++)
+			if(t != kb)
+			{
+				update(kb, t, pivot, null, side, work);
+				update(t, kb, null, pivot, side, work);
+			}
+		// phase 3: the remaining tiles, row by row
+		int loaded = -1;
+		boolean leftToRight = true;
+		for(int bi = 0; bi < tiles; bi++)
+		{
+			if(bi == kb)
+				continue;
+			read(bi, kb, side, column);
+			for(int step = 0; step < tiles; step++)
+			{
+				int bj = leftToRight ? step : tiles - 1 - step;
+				if(bj == kb)
+					continue;
+				if(bj != loaded)
+				{
+					read(kb, bj, side, row);
+					loaded = bj;
+				}
+				update(bi, bj, column, row, side, work);
+			}
+			leftToRight = !leftToRight;
+		}
+	}
+	
+	/**
+	 * Reads the tile (bi, bj), relaxes it in the work array against the given tiles, and writes it back if it changed.
+	 * 
+	 * @param columnTile
+	 *            : the tile with the distances from the nodes of the tile to the pivots; <code>null</code> for the tile itself
+	 * @param rowTile
+	 *            : the tile with the distances from the pivots to the nodes of the tile; <code>null</code> for the tile itself
+	 */
+	private void update(int bi, int bj, long[] columnTile, long[] rowTile, int side, long[] work) throws IOException
+	{
+		File file = TiledDistances.tileFile(config.directory, bi, bj);
+		TiledDistances.read(file, side, 0, work, 0, side * side, buffer);
+		if(relax(work, (columnTile == null) ? work : columnTile, (rowTile == null) ? work : rowTile, side))
+			TiledDistances.write(file, side, work, buffer);
+	}
+	
+	private void read(int bi, int bj, int side, long[] into) throws IOException
+	{
+		TiledDistances.read(TiledDistances.tileFile(config.directory, bi, bj), side, 0, into, 0, side * side, buffer);
+	}
+	
+	/**
+	 * Relaxes the tile c with the paths through the pivots of the block, from c's rows to the pivots in a, and from the pivots to c's columns in b. The tiles
+	 * may be the same array.
+	 * 
+	 * @return true if some distance of c changed.
+	 */
+	protected static boolean relax(long[] c, long[] a, long[] b, int side)
+	{
+		boolean ret = false;
+		for(int k = 0; k < side; k++)
+		{
+			int rowK = k * side;
+			for(int i = 0; i < side; i++)
+			{
+				int rowI = i * side;
+				long dik = a[rowI + k];
+				if(dik == INF)
+					continue;
+				for(int j = 0; j < side; j++)
+				{
+					long dkj = b[rowK + j];
+					if((dkj != INF) && (dik + dkj < c[rowI + j]))
+					{
+						c[rowI + j] = dik + dkj;
+						ret = true;
+					}
+				}
+			}
+		}
+		return ret;
+	}
+	
+	/**
+	 * @return the number of blocks of pivots completed by a previous computation of the same matrix, or -1 if there is no such checkpoint.
+	 */
+	protected int readCheckpoint(int n, int side, long fingerprint) throws IOException
+	{
+		File file = new File(config.directory, CHECKPOINT);
+		if(!file.isFile() || (file.length() != 32))
+			return -1;
+		byte[] content = Files.readAllBytes(file.toPath());
+		ByteBuffer buffer = ByteBuffer.wrap(content).order(ByteOrder.LITTLE_ENDIAN);
+		if(!Arrays.equals(Arrays.copyOf(content, MAGIC.length), MAGIC) || (content[4] != VERSION))
+			return -1;
+		if((buffer.getLong(8) != n) || (buffer.getInt(16) != side) || (buffer.getLong(24) != fingerprint))
+		{
+			log.info("checkpoint of a different computation in " + config.directory + "; starting over");
+			return -1;
+		}
+		int ret = buffer.getInt(20);
+		return ((ret >= 0) && (ret <= (n + side - 1) / side)) ? ret : -1;
+	}
+	
+	/**
+	 * Writes the checkpoint to a temporary file, forced to disk, then moves it over the previous one, so that the checkpoint is either the old or the new one.
+	 * The header is the magic bytes "FWOC", the version, three unused bytes, n (eight bytes), the side of the tiles, the number of completed blocks and the
+	 * fingerprint of the edges (eight bytes), little-endian.
+	 */
+	protected void writeCheckpoint(int n, int side, long fingerprint, int done) throws IOException
+	{
+		ByteBuffer buffer = ByteBuffer.allocate(32).order(ByteOrder.LITTLE_ENDIAN);
+		buffer.put(MAGIC).put((byte)VERSION);
+		buffer.putLong(8, n).putInt(16, side).putInt(20, done).putLong(24, fingerprint);
+		File temporary = new File(config.directory, CHECKPOINT + ".tmp");
+		RandomAccessFile raf = new RandomAccessFile(temporary, "rw");
+		try
+		{
+			raf.setLength(0);
+			raf.write(buffer.array());
+			raf.getFD().sync();
+		} finally
+		{
+			raf.close();
+		}
+		Files.move(temporary.toPath(), new File(config.directory, CHECKPOINT).toPath(), StandardCopyOption.REPLACE_EXISTING,
+				StandardCopyOption.ATOMIC_MOVE);
+	}
+	
+	/**
+	 * @return a hash of the edges by node ids, which does not depend on their order.
+	 */
+	protected static long fingerprint(CsrGraph csr)
+	{
+		int[] offsets = csr.getOutOffsets();
+		int[] targets = csr.getOutTargets();
+		long[] weights = csr.getOutWeights();
+		long ret = csr.n();
+		for(int u = 0; u < csr.n(); u++)
+			for(int p = offsets[u]; p < offsets[u + 1]; p++)
+			{
+				long h = (((long)u << 32) | targets[p]) * 0x9E3779B97F4A7C15L + weights[p];
+				h ^= h >>> 31;
+				h *= 0xBF58476D1CE4E5B9L;
+				ret += h ^ (h >>> 29);
+			}
+		return ret;
+	}
+	
+	private static boolean hasNegativeWeights(CsrGraph csr)
+	{
+		long[] weights = csr.getOutWeights();
+		for(int p = 0; p < csr.m(); p++)
+			if(weights[p] < 0)
+				return true;
+		return false;
+	}
+}
@@ -0,0 +1,157 @@
+package util.graph.paths;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+import util.graph.Graph;
+
+/**
+ * Multi-core version of {@link BlockedFloydWarshall}.
+ * 
+ * <p>
+ * For each block of pivots, the diagonal tile is relaxed on the calling thread; then the tiles of the pivot row and column, and afterwards the remaining tiles,
+ * are relaxed concurrently on a {@link ForkJoinPool}. The tiles of a phase are independent of each other (they write disjoint cells and only read the diagonal
+ * tile, respectively the pivot row and column), so the only synchronization needed is the barrier at the end of each phase.
+ * 
+ * <p>
+ * The distances are the same as those of the sequential kernels.
+ */
+public class ParallelFloydWarshall extends BlockedFloydWarshall
+{
+	/**
+	 * Adds the thread pool to the configuration. If no pool is given, a pool with the configured parallelism is created for each computation and shut down
+	 * afterwards.
+	 */
+	public static class ParallelFloydWarshallConfig extends BlockedFloydWarshallConfig
+	{
+		ForkJoinPool	pool		= null;
+		int				parallelism	= Runtime.getRuntime().availableProcessors();
+		
+		public ParallelFloydWarshallConfig(Graph thegraph)
+		{
+			super(thegraph);
+		}
+		
+		/**
+		 * @param forkJoinPool
+		 *            : the pool to run the tiles on. The pool is not shut down by the computation.
+		 * @return the config itself, for chained calls.
+		 */
+		public ParallelFloydWarshallConfig setPool(ForkJoinPool forkJoinPool)
+		{
+			this.pool = forkJoinPool;
+			return this;
+		}
+		
+		/**
+		 * @param threads
+		 *            : the number of threads of the pool created by the computation; ignored if a pool is set with {@link #setPool(ForkJoinPool)}.
+		 * @return the config itself, for chained calls.
+		 */
+		public ParallelFloydWarshallConfig setParallelism(int threads)
+		{
+			if(threads < 1)
+				throw new IllegalArgumentException("parallelism must be positive");
+			this.parallelism = threads;
+			return this;
+		}
+	}
+	
+	/**
+	 * Relaxes the tiles with indexes in [from, to) (in tile units) for the pivot block starting at kb, splitting the range in halves until one tile index is
+	 * left.
+	 * 
+	 * <p>
+	 * In the row / column phase, tile index t stands for both the tile (kb, t) and the tile (t, kb). In the last phase, tile index t stands for the whole row of
+	 * tiles (t, *).
+	 */
+	protected static class TileRangeTask extends RecursiveAction
+	{
+		private static final long	serialVersionUID	= 1L;
+		
+		long[]						dist;
+		int[]						next;
+		int							n;
+		int							b;
+		int							kb;
+		boolean						rowColumnPhase;
+		int							from;
+		int							to;
+		
+		TileRangeTask(long[] distances, int[] nextHops, int size, int tileSize, int pivotBlock, boolean isRowColumnPhase, int fromTile, int toTile)
+		{
+			dist = distances;
+			next = nextHops;
+			n = size;
+			b = tileSize;
+			kb = pivotBlock;
+			rowColumnPhase = isRowColumnPhase;
+			from = fromTile;
+			to = toTile;
+		}
+		
+		@Override
+		protected void compute()
+		{
+			if(to - from > 1)
+			{
+				int mid = (from + to) >>> 1;
+				invokeAll(new TileRangeTask(dist, next, n, b, kb, rowColumnPhase, from, mid), new TileRangeTask(dist, next, n, b, kb, rowColumnPhase, mid, to));
+				return;
+			}
+			int t = from * b;
+			if(t == kb)
+				return;
+			int tEnd = Math.min(t + b, n);
+			int kEnd = Math.min(kb + b, n);
+			if(rowColumnPhase)
+			{
+				relaxTile(dist, next, n, kb, kEnd, t, tEnd, kb, kEnd);
+				relaxTile(dist, next, n, t, tEnd, kb, kEnd, kb, kEnd);
+			}
+			else
+				for(int jb = 0; jb < n; jb += b)
+					if(jb != kb)
+						relaxTile(dist, next, n, t, tEnd, jb, Math.min(jb + b, n), kb, kEnd);
+		}
+	}
+	
+	public ParallelFloydWarshall(Graph graph)
+	{
+		this(new ParallelFloydWarshallConfig(graph));
+	}
+	
+	public ParallelFloydWarshall(ParallelFloydWarshallConfig conf)
+	{
+		super(conf);
+	}
+	
+	@Override
+	protected int runKernel(long[] dist, int[] next, int n)
+	{
+		ParallelFloydWarshallConfig conf = (ParallelFloydWarshallConfig)config;
+		ForkJoinPool pool = conf.pool;
+		if(pool == null)
+			pool = new ForkJoinPool(conf.parallelism);
+		try
+		{
+			int b = getTileSize();
+			int tiles = (n + b - 1) / b;
+			for(int kb = 0; kb < n; kb += b)
+			{
+				int kEnd = Math.min(kb + b, n);
+				relaxTile(dist, next, n, kb, kEnd, kb, kEnd, kb, kEnd);
+				pool.invoke(new TileRangeTask(dist, next, n, b, kb, true, 0, tiles));
+				pool.invoke(new TileRangeTask(dist, next, n, b, kb, false, 0, tiles));
+				int negative = findNegativeDiagonal(dist, n, 0, n);
+				if(negative >= 0)
+					return negative;
+			}
+			return -1;
+		} finally
+		{
+			if(conf.pool == null)
+				pool.shutdown();
+		}
+	}
+}
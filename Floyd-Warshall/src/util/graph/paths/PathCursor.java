@@ -0,0 +1,104 @@
+package util.graph.paths;
+
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * A lazy walk along a shortest path, which returns the nodes of the path, or the edges between them, one at a time, without building a list.
+ * 
+ * <p>
+ * The walk follows node ids in the primitive arrays of a result (next hops of an {@link AllPairsResult}, predecessors of a {@link SingleSourceResult}); a
+ * subclass tells how to go from one node of the path to the next, and what to return for each step. A cursor is its own {@link Iterable}, so that it can be
+ * used in a for-each loop, but it can be iterated only once.
+ * 
+ * @param <T>
+ *            the type of the elements: {@link util.graph.Node} or {@link util.graph.Edge}
+ */
+public abstract class PathCursor<T> implements Iterator<T>, Iterable<T>
+{
+	/**
+	 * True if the elements are the edges between consecutive nodes, rather than the nodes.
+	 */
+	protected boolean	overEdges	= false;
+	/**
+	 * The id of the last node passed, or -1 before the first.
+	 */
+	protected int		previous	= -1;
+	/**
+	 * The id of the next node of the path, or -1 at the end.
+	 */
+	protected int		upcoming	= -1;
+	
+	protected PathCursor(boolean edges)
+	{
+		this.overEdges = edges;
+	}
+	
+	/**
+	 * Starts the walk at the given node. When walking over edges, the first node is passed at once, since the first element is the edge that leaves it.
+	 * 
+	 * @param first
+	 *            : the id of the first node of the path; -1 for an empty walk
+	 */
+	protected void start(int first)
+	{
+		previous = -1;
+		upcoming = first;
+		if(overEdges && (first >= 0))
+		{
+			previous = first;
+			upcoming = advance(first);
+		}
+	}
+	
+	@Override
+	public boolean hasNext()
+	{
+		return upcoming >= 0;
+	}
+	
+	@Override
+	public T next()
+	{
+		if(upcoming < 0)
+			throw new NoSuchElementException("end of the path");
+		int u = upcoming;
+		T ret = element(previous, u);
+		previous = u;
+		upcoming = advance(u);
+		return ret;
+	}
+	
+	/**
+	 * @return the id of the next node of the path, without moving the cursor; -1 at the end of the path.
+	 */
+	public int peekId()
+	{
+		return upcoming;
+	}
+	
+	@Override
+	public void remove()
+	{
+		throw new UnsupportedOperationException("paths are read-only");
+	}
+	
+	/**
+	 * @return the cursor itself.
+	 */
+	@Override
+	public Iterator<T> iterator()
+	{
+		return this;
+	}
+	
+	/**
+	 * @return the id of the node that follows u on the path, or -1 if u is the last node.
+	 */
+	protected abstract int advance(int u);
+	
+	/**
+	 * @return the element for the step that reaches u: the node u itself, or the edge from the previous node to u.
+	 */
+	protected abstract T element(int previousId, int u);
+}
@@ -0,0 +1,20 @@
+package util.graph.paths;
+
+import util.graph.Node;
+
+/**
+ * Receives the shortest paths from one source to all the nodes it reaches, one path at a time (see {@link AllPairsResult#forEachPath(Node, PathVisitor)} and
+ * {@link SingleSourceResult#forEachPath(PathVisitor)}).
+ */
+public interface PathVisitor
+{
+	/**
+	 * @param target
+	 *            : the last node of the path
+	 * @param distance
+	 *            : the length of the path
+	 * @param path
+	 *            : the nodes of the path, from the source to the target. The same cursor is reused for all paths: it is only valid during the call.
+	 */
+	public void visit(Node target, long distance, PathCursor<Node> path);
+}
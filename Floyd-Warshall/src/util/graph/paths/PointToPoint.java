@@ -0,0 +1,305 @@
+package util.graph.paths;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import util.graph.Edge;
+import util.graph.Graph;
+import util.graph.Node;
+
+/**
+ * Answers shortest path queries between two nodes of a {@link Graph}, with two searches, one from each end, that stop as soon as they meet.
+ * 
+ * <p>
+ * {@link #bfs(Node, Node, Direction)} counts edges, with a bidirectional breadth-first search that expands the smaller of the two frontiers one level at a
+ * time; the first node reached by both searches is on a shortest path. {@link #dijkstra(Node, Node, Direction)} and
+ * {@link #aStar(Node, Node, Direction, Heuristic)} follow edge weights, which must not be negative, with a bidirectional Dijkstra search; A* makes both
+ * searches go toward the other end, with the average of the forward and the backward potentials so that they stay consistent with each other. The weighted
+ * searches stop when the sum of the smallest keys of both queues exceeds the best path seen.
+ * 
+ * <p>
+ * The searches walk the graph itself, through {@link Node#getOutEdges()} forward and {@link Node#getInEdges()} backward, and only follow the edges and nodes
+ * contained in the graph; there is no snapshot to build first, and changes to the graph are seen by the next query. Only the nodes reached by a query are
+ * given working slots, so a query that ends early costs no more than the part of the graph it explored. An instance keeps its working arrays between queries
+ * and must not be used by several threads at once.
+ * 
+ * <p>
+ * Usage: <code>PointToPointResult path = new PointToPoint(graph).dijkstra(from, to, Direction.FORWARD);</code>
+ */
+public class PointToPoint
+{
+	protected static final long	INF			= AllPairsResult.UNREACHABLE;
+	protected static final int	FROM_SOURCE	= 0;
+	protected static final int	FROM_TARGET	= 1;
+	
+	protected Graph				graph		= null;
+	/**
+	 * The slot of each node reached by the current query.
+	 */
+	protected Map<Node, Integer>	slots		= new HashMap<Node, Integer>();
+	/**
+	 * The node of each slot.
+	 */
+	protected List<Node>		reached		= new ArrayList<Node>();
+	/**
+	 * For each side (from the source, from the target), the distance of each slot from the end of that side.
+	 */
+	protected long[][]			dist		= new long[2][];
+	/**
+	 * For each side, the edge through which each slot was reached.
+	 */
+	protected Edge[][]			via			= new Edge[2][];
+	protected boolean[][]		settled		= new boolean[2][];
+	/**
+	 * The potential of each slot: estimate to the target minus estimate from the source.
+	 */
+	protected long[]			potential	= null;
+	protected IndexedHeap[]		heap		= new IndexedHeap[2];
+	protected Heuristic			heuristic	= Heuristic.NONE;
+	protected Node				source		= null;
+	protected Node				target		= null;
+	
+	public PointToPoint(Graph theGraph)
+	{
+		if(theGraph == null)
+			throw new IllegalArgumentException("the graph cannot be null");
+		this.graph = theGraph;
+	}
+	
+	public Graph getGraph()
+	{
+		return graph;
+	}
+	
+	/**
+	 * @return a path with the fewest edges between the two nodes, weights ignored; <code>null</code> if there is none.
+	 */
+	public PointToPointResult bfs(Node from, Node to, Direction direction)
+	{
+		start(from, to, Heuristic.NONE);
+		if(from == to)
+			return trivial(from, direction);
+		List<List<Node>> frontier = new ArrayList<List<Node>>(2);
+		frontier.add(Collections.singletonList(from));
+		frontier.add(Collections.singletonList(to));
+		int explored = 0;
+		while(!frontier.get(FROM_SOURCE).isEmpty() && !frontier.get(FROM_TARGET).isEmpty())
+		{
+			int side = (frontier.get(FROM_SOURCE).size() <= frontier.get(FROM_TARGET).size()) ? FROM_SOURCE : FROM_TARGET;
+			List<Node> level = new ArrayList<Node>();
+			for(Node u : frontier.get(side))
+			{
+				explored++;
+				long du = dist[side][slot(u)];
+				boolean followOut = followsOutEdges(side, direction);
+				boolean followIn = followsInEdges(side, direction);
+				for(int pass = 0; pass < 2; pass++)
+				{
+					if(!((pass == 0) ? followOut : followIn))
+						continue;
+					for(Edge e : (pass == 0) ? u.getOutEdges() : u.getInEdges())
+					{
+						Node v = (pass == 0) ? e.getTo() : e.getFrom();
+						if((v == u) || !graph.contains(e) || !graph.contains(v))
+							continue;
+						int sv = slot(v);
+						if(dist[side][sv] != INF)
+							continue;
+						dist[side][sv] = du + 1;
+						via[side][sv] = e;
+						// the levels of both searches are full up to here, so the first meeting is a shortest path
+						if(dist[1 - side][sv] != INF)
+							return path(sv, dist[FROM_SOURCE][sv] + dist[FROM_TARGET][sv], direction, explored);
+						level.add(v);
+					}
+				}
+			}
+			frontier.set(side, level);
+		}
+		return null;
+	}
+	
+	/**
+	 * @return a path of least weight between the two nodes; <code>null</code> if there is none.
+	 * @throws IllegalArgumentException
+	 *             if the search meets an edge of negative weight.
+	 */
+	public PointToPointResult dijkstra(Node from, Node to, Direction direction)
+	{
+		return aStar(from, to, direction, Heuristic.NONE);
+	}
+	
+	/**
+	 * @param estimate
+	 *            : a consistent lower bound on the distances (see {@link Heuristic})
+	 * @return a path of least weight between the two nodes; <code>null</code> if there is none.
+	 * @throws IllegalArgumentException
+	 *             if the search meets an edge of negative weight.
+	 */
+	public PointToPointResult aStar(Node from, Node to, Direction direction, Heuristic estimate)
+	{
+		if(estimate == null)
+			throw new IllegalArgumentException("null heuristic; use Heuristic.NONE");
+		start(from, to, estimate);
+		if(from == to)
+			return trivial(from, direction);
+		int s = slot(from);
+		int t = slot(to);
+		// keys are doubled, so that the average of the two potentials stays integral
+		heap[FROM_SOURCE].insert(s, potential[s]);
+		heap[FROM_TARGET].insert(t, -potential[t]);
+		long best = INF;
+		int meet = -1;
+		int explored = 0;
+		try
+		{
+			while(!heap[FROM_SOURCE].isEmpty() && !heap[FROM_TARGET].isEmpty())
+			{
+				if((best != INF) && (heap[FROM_SOURCE].peekKey() + heap[FROM_TARGET].peekKey() >= 2 * best))
+					break;
+				int side = (heap[FROM_SOURCE].size() <= heap[FROM_TARGET].size()) ? FROM_SOURCE : FROM_TARGET;
+				int su = heap[side].poll();
+				settled[side][su] = true;
+				explored++;
+				Node u = reached.get(su);
+				long du = dist[side][su];
+				boolean followOut = followsOutEdges(side, direction);
+				boolean followIn = followsInEdges(side, direction);
+				for(int pass = 0; pass < 2; pass++)
+				{
+					if(!((pass == 0) ? followOut : followIn))
+						continue;
+					for(Edge e : (pass == 0) ? u.getOutEdges() : u.getInEdges())
+					{
+						Node v = (pass == 0) ? e.getTo() : e.getFrom();
+						if((v == u) || !graph.contains(e) || !graph.contains(v))
+							continue;
+						if(e.getWeight() < 0)
+							throw new IllegalArgumentException("negative edge weight " + e.getWeight() + " on edge " + e);
+						int sv = slot(v);
+						long dv = du + e.getWeight();
+						if(!settled[side][sv] && (dv < dist[side][sv]))
+						{
+							dist[side][sv] = dv;
+							via[side][sv] = e;
+							heap[side].offer(sv, 2 * dv + ((side == FROM_SOURCE) ? potential[sv] : -potential[sv]));
+						}
+						long other = dist[1 - side][sv];
+						if((other != INF) && (dist[side][sv] + other < best))
+						{
+							best = dist[side][sv] + other;
+							meet = sv;
+						}
+					}
+				}
+			}
+		} finally
+		{
+			heap[FROM_SOURCE].clear();
+			heap[FROM_TARGET].clear();
+		}
+		if(meet < 0)
+			return null;
+		return path(meet, best, direction, explored);
+	}
+	
+	/**
+	 * Forgets the previous query and gives slots to both ends.
+	 */
+	protected void start(Node from, Node to, Heuristic estimate)
+	{
+		if(!graph.contains(from))
+			throw new IllegalArgumentException("node not in graph: " + from);
+		if(!graph.contains(to))
+			throw new IllegalArgumentException("node not in graph: " + to);
+		int capacity = Math.max(2, graph.n());
+		if((potential == null) || (potential.length < capacity))
+		{
+			for(int side = 0; side < 2; side++)
+			{
+				dist[side] = new long[capacity];
+				via[side] = new Edge[capacity];
+				settled[side] = new boolean[capacity];
+				heap[side] = new IndexedHeap(capacity);
+			}
+			potential = new long[capacity];
+		}
+		slots.clear();
+		reached.clear();
+		heuristic = estimate;
+		source = from;
+		target = to;
+		dist[FROM_SOURCE][slot(from)] = 0;
+		dist[FROM_TARGET][slot(to)] = 0;
+	}
+	
+	/**
+	 * @return the slot of the node, which is given one, with no distance yet, if it has none.
+	 */
+	protected int slot(Node node)
+	{
+		Integer ret = slots.get(node);
+		if(ret != null)
+			return ret.intValue();
+		int k = reached.size();
+		slots.put(node, new Integer(k));
+		reached.add(node);
+		dist[FROM_SOURCE][k] = INF;
+		dist[FROM_TARGET][k] = INF;
+		settled[FROM_SOURCE][k] = false;
+		settled[FROM_TARGET][k] = false;
+		via[FROM_SOURCE][k] = null;
+		via[FROM_TARGET][k] = null;
+		potential[k] = (heuristic == Heuristic.NONE) ? 0 : heuristic.estimate(node, target) - heuristic.estimate(source, node);
+		return k;
+	}
+	
+	/**
+	 * @return true if the search of the side follows the out-edges of the nodes. The search from the source follows the edges in the direction of the query;
+	 *         the search from the target goes the other way.
+	 */
+	private static boolean followsOutEdges(int side, Direction direction)
+	{
+		return (side == FROM_SOURCE) ? (direction != Direction.BACKWARD) : (direction != Direction.FORWARD);
+	}
+	
+	private static boolean followsInEdges(int side, Direction direction)
+	{
+		return (side == FROM_SOURCE) ? (direction != Direction.FORWARD) : (direction != Direction.BACKWARD);
+	}
+	
+	private PointToPointResult trivial(Node node, Direction direction)
+	{
+		return new PointToPointResult(direction, 0, new ArrayList<Node>(Collections.singletonList(node)), new ArrayList<Edge>(), 0);
+	}
+	
+	/**
+	 * Joins the path from the source to the meeting slot and the path from the meeting slot to the target.
+	 */
+	private PointToPointResult path(int meet, long length, Direction direction, int explored)
+	{
+		List<Node> nodes = new ArrayList<Node>();
+		List<Edge> edges = new ArrayList<Edge>();
+		Node node = reached.get(meet);
+		nodes.add(node);
+		for(Edge e = via[FROM_SOURCE][meet]; e != null; e = via[FROM_SOURCE][slot(node)])
+		{
+			node = (e.getTo() == node) ? e.getFrom() : e.getTo();
+			nodes.add(node);
+			edges.add(e);
+		}
+		Collections.reverse(nodes);
+		Collections.reverse(edges);
+		node = reached.get(meet);
+		for(Edge e = via[FROM_TARGET][meet]; e != null; e = via[FROM_TARGET][slot(node)])
+		{
+			node = (e.getTo() == node) ? e.getFrom() : e.getTo();
+			nodes.add(node);
+			edges.add(e);
+		}
+		return new PointToPointResult(direction, length, nodes, edges, explored);
+	}
+}
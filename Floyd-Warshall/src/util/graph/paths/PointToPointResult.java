@@ -0,0 +1,84 @@
+package util.graph.paths;
+
+import java.util.Collections;
+import java.util.List;
+
+import util.graph.Edge;
+import util.graph.Node;
+
+/**
+ * A shortest path between two nodes, found by {@link PointToPoint}.
+ * 
+ * <p>
+ * The edge k of the path joins the node k and the node k + 1. With {@link Direction#FORWARD}, it goes from the node k to the node k + 1; with
+ * {@link Direction#BACKWARD}, it goes the other way; with {@link Direction#UNDIRECTED}, it may go either way.
+ */
+public class PointToPointResult
+{
+	protected Direction		direction	= null;
+	protected long			length		= 0;
+	protected List<Node>	nodes		= null;
+	protected List<Edge>	edges		= null;
+	protected int			explored	= 0;
+	
+	public PointToPointResult(Direction traversal, long pathLength, List<Node> pathNodes, List<Edge> pathEdges, int exploredNodes)
+	{
+		if(pathNodes.size() != pathEdges.size() + 1)
+			throw new IllegalArgumentException("a path of " + pathNodes.size() + " nodes cannot have " + pathEdges.size() + " edges");
+		this.direction = traversal;
+		this.length = pathLength;
+		this.nodes = Collections.unmodifiableList(pathNodes);
+		this.edges = Collections.unmodifiableList(pathEdges);
+		this.explored = exploredNodes;
+	}
+	
+	public Direction getDirection()
+	{
+		return direction;
+	}
+	
+	public Node getSource()
+	{
+		return nodes.get(0);
+	}
+	
+	public Node getTarget()
+	{
+		return nodes.get(nodes.size() - 1);
+	}
+	
+	/**
+	 * @return the total weight of the edges of the path, or their number for a breadth-first search.
+	 */
+	public long getLength()
+	{
+		return length;
+	}
+	
+	/**
+	 * @return the nodes of the path, both ends included.
+	 */
+	public List<Node> getNodes()
+	{
+		return nodes;
+	}
+	
+	public List<Edge> getEdges()
+	{
+		return edges;
+	}
+	
+	/**
+	 * @return the number of nodes whose neighbors were explored by the two searches together, as a measure of the work done.
+	 */
+	public int getExplored()
+	{
+		return explored;
+	}
+	
+	@Override
+	public String toString()
+	{
+		return "path of length " + length + ": " + nodes;
+	}
+}
@@ -0,0 +1,405 @@
+package util.graph.paths;
+
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+import util.graph.CsrGraph;
+import util.graph.Graph;
+import util.graph.Node;
+import util.graph.NodeIndex;
+import util.logging.Unit;
+
+/**
+ * Answers whether a node of a directed {@link Graph} can reach another, from labels computed once, without traversing the graph; for graphs too large for a
+ * {@link TransitiveClosure}.
+ * 
+ * <p>
+ * The nodes are first collapsed into their {@link StronglyConnectedComponents}, all nodes of a component reaching the same nodes. On the acyclic condensation,
+ * each component c gets two labels, sets of components: L_out(c), which c reaches, and L_in(c), which reach c, such that c reaches d if and only if L_out(c)
+ * and L_in(d) share a component (2-hop labels). The labels are built by pruned landmark labeling (Yano et al., 2013): the components are taken in decreasing
+ * order of the product of their in- and out-degrees; a breadth-first search from each component r, forward and backward, adds r to the labels of the
+ * components it meets, but does not go past those for which the labels already built prove the reachability. The first components, which lie on many paths,
+ * end the later searches early, so the labels stay small on most graphs.
+ * 
+ * <p>
+ * The searches run in batches on a {@link ForkJoinPool}: the searches of a batch are pruned with the labels of the previous batches only, and their labels are
+ * added at the end of the batch, so that the result does not depend on the scheduling. The first batches, whose components prune the most, are small; the size
+ * of the batches then doubles up to a few searches per thread. A batch may add labels that a sequential build would have pruned, which costs memory but not
+ * correctness.
+ * 
+ * <p>
+ * A query compares the component numbers first: components are numbered in a reverse topological order, so a component never reaches a higher one. Otherwise,
+ * the labels, kept sorted in flat arrays, are intersected with a merge.
+ * 
+ * <p>
+ * The index is a snapshot: {@link #rebuild()} takes the graph again. Queries may run concurrently with each other, but not with a rebuild. Usage:
+ * <code>ReachabilityIndex reach = new ReachabilityIndex(graph);</code>, then <code>reach.reachable(a, b)</code>.
+ */
+public class ReachabilityIndex extends Unit
+{
+	/**
+	 * Configures the index with the {@link Graph} to process and the thread pool. If no pool is given, a pool with the configured parallelism is created for
+	 * each build and shut down afterwards.
+	 */
+	public static class ReachabilityIndexConfig extends UnitConfigData
+	{
+		Graph			graph		= null;
+		ForkJoinPool	pool		= null;
+		int				parallelism	= Runtime.getRuntime().availableProcessors();
+		
+		public ReachabilityIndexConfig(Graph thegraph)
+		{
+			super();
+			if(thegraph == null)
+				throw new IllegalArgumentException("the graph cannot be null");
+			this.graph = thegraph;
+		}
+		
+		/**
+		 * @param forkJoinPool
+		 *            : the pool to run the searches on. The pool is not shut down by the build.
+		 * @return the config itself, for chained calls.
+		 */
+		public ReachabilityIndexConfig setPool(ForkJoinPool forkJoinPool)
+		{
+			this.pool = forkJoinPool;
+			return this;
+		}
+		
+		/**
+		 * @param threads
+		 *            : the number of threads of the pool created by the build; ignored if a pool is set with {@link #setPool(ForkJoinPool)}.
+		 * @return the config itself, for chained calls.
+		 */
+		public ReachabilityIndexConfig setParallelism(int threads)
+		{
+			if(threads < 1)
+				throw new IllegalArgumentException("parallelism must be positive");
+			this.parallelism = threads;
+			return this;
+		}
+	}
+	
+	/**
+	 * The labels while they are built: for each component, its label components in increasing rank, in an array with some free room.
+	 */
+	protected static class Labels
+	{
+		int[][]	items;
+		int[]	sizes;
+		
+		Labels(int components)
+		{
+			items = new int[components][];
+			sizes = new int[components];
+		}
+		
+		void add(int c, int rank)
+		{
+			if(items[c] == null)
+				items[c] = new int[2];
+			else if(sizes[c] == items[c].length)
+				items[c] = Arrays.copyOf(items[c], 2 * sizes[c]);
+			items[c][sizes[c]++] = rank;
+		}
+	}
+	
+	/**
+	 * Runs the searches from the roots in [from, to) of the batch, splitting the range in halves along with the workspaces in [firstSpace, lastSpace), so that
+	 * each leaf has a workspace of its own.
+	 */
+	protected static class RootRangeTask extends RecursiveAction
+	{
+		private static final long	serialVersionUID	= 1L;
+		
+		CsrGraph					dag;
+		int[]						order;
+		Labels						out;
+		Labels						in;
+		int[][]						spaces;
+		int[][]						reachedForward;
+		int[][]						reachedBackward;
+		int							first;
+		int							from;
+		int							to;
+		int							firstSpace;
+		int							lastSpace;
+		
+		RootRangeTask(CsrGraph condensation, int[] rankedComponents, Labels outLabels, Labels inLabels, int[][] workspaces, int[][] forward,
+				int[][] backward, int batchStart, int fromRank, int toRank, int fromSpace, int toSpace)
+		{
+			dag = condensation;
+			order = rankedComponents;
+			out = outLabels;
+			in = inLabels;
+			spaces = workspaces;
+			reachedForward = forward;
+			reachedBackward = backward;
+			first = batchStart;
+			from = fromRank;
+			to = toRank;
+			firstSpace = fromSpace;
+			lastSpace = toSpace;
+		}
+		
+		@Override
+		protected void compute()
+		{
+			if((lastSpace - firstSpace > 1) && (to - from > 1))
+			{
+				int mid = (from + to) >>> 1;
+				int midSpace = (firstSpace + lastSpace) >>> 1;
+				invokeAll(new RootRangeTask(dag, order, out, in, spaces, reachedForward, reachedBackward, first, from, mid, firstSpace, midSpace),
+						new RootRangeTask(dag, order, out, in, spaces, reachedForward, reachedBackward, first, mid, to, midSpace, lastSpace));
+				return;
+			}
+			int[] space = spaces[firstSpace];
+			for(int rank = from; rank < to; rank++)
+			{
+				reachedForward[rank - first] = search(dag.getOutOffsets(), dag.getOutTargets(), order[rank], 2 * rank, out, in, space);
+				reachedBackward[rank - first] = search(dag.getInOffsets(), dag.getInSources(), order[rank], 2 * rank + 1, in, out, space);
+			}
+		}
+	}
+	
+	/**
+	 * The seed of the order of the components of equal degrees, so that the index of a graph is always the same.
+	 */
+	public static final long			SEED		= 20130622L;
+	
+	protected ReachabilityIndexConfig	config		= null;
+	protected NodeIndex					index		= null;
+	/**
+	 * The component of each node, by node id.
+	 */
+	protected int[]						component	= null;
+	/**
+	 * The out-labels of component c are the ranks in [outOffsets[c], outOffsets[c + 1]) of outLabels, in increasing order; the same for the in-labels.
+	 */
+	protected int[]						outOffsets	= null;
+	protected int[]						outLabels	= null;
+	protected int[]						inOffsets	= null;
+	protected int[]						inLabels	= null;
+	
+	/**
+	 * Builds the index of the graph.
+	 */
+	public ReachabilityIndex(Graph graph)
+	{
+		this(new ReachabilityIndexConfig(graph));
+	}
+	
+	public ReachabilityIndex(ReachabilityIndexConfig conf)
+	{
+		super(conf);
+		if(conf == null)
+			throw new IllegalArgumentException("null configuration");
+		this.config = conf;
+		rebuild();
+	}
+	
+	/**
+	 * Builds the index again from the current graph.
+	 */
+	public void rebuild()
+	{
+		CsrGraph csr = new CsrGraph(config.graph);
+		StronglyConnectedComponents scc = new StronglyConnectedComponents(csr);
+		CsrGraph dag = scc.condensation();
+		int count = dag.n();
+		int[] order = rank(dag);
+		
+		Labels out = new Labels(count);
+		Labels in = new Labels(count);
+		ForkJoinPool pool = config.pool;
+		if(pool == null)
+			pool = new ForkJoinPool(config.parallelism);
+		try
+		{
+			int threads = pool.getParallelism();
+			// a workspace per thread: the mark of each component, then the queue of the search
+			int[][] spaces = new int[threads][];
+			for(int t = 0; t < threads; t++)
+			{
+				spaces[t] = new int[2 * count];
+				Arrays.fill(spaces[t], 0, count, -1);
+			}
+			int maxBatch = 4 * threads;
+			int[][] forward = new int[maxBatch][];
+			int[][] backward = new int[maxBatch][];
+			for(int first = 0, batch = 1; first < count; first += batch, batch = Math.min(2 * batch, maxBatch))
+			{
+				int last = Math.min(count, first + batch);
+				pool.invoke(new RootRangeTask(dag, order, out, in, spaces, forward, backward, first, first, last, 0, threads));
+				for(int rank = first; rank < last; rank++)
+				{
+					for(int c : forward[rank - first])
+						in.add(c, rank);
+					for(int c : backward[rank - first])
+						out.add(c, rank);
+				}
+			}
+		} finally
+		{
+			if(config.pool == null)
+				pool.shutdown();
+		}
+		
+		index = csr.getIndex();
+		component = scc.getComponents();
+		outOffsets = new int[count + 1];
+		outLabels = flatten(out, outOffsets);
+		inOffsets = new int[count + 1];
+		inLabels = flatten(in, inOffsets);
+		log.info("reachability index built for " + csr.n() + " nodes, " + count + " components and " + (outLabels.length + inLabels.length) + " labels");
+	}
+	
+	public NodeIndex getIndex()
+	{
+		return index;
+	}
+	
+	/**
+	 * @return the number of strongly connected components.
+	 */
+	public int componentCount()
+	{
+		return outOffsets.length - 1;
+	}
+	
+	/**
+	 * @return the total number of components in the in- and out-labels.
+	 */
+	public long labelCount()
+	{
+		return (long)outLabels.length + inLabels.length;
+	}
+	
+	/**
+	 * @return the number of bytes taken by the index: the component of each node, the labels and their offsets. The {@link NodeIndex} of the nodes is not
+	 *         counted.
+	 */
+	public long memory()
+	{
+		return 4L * (component.length + outOffsets.length + outLabels.length + inOffsets.length + inLabels.length);
+	}
+	
+	/**
+	 * @return true if there is a path from the first node to the second; a node reaches itself.
+	 */
+	public boolean reachable(Node from, Node to)
+	{
+		return reachable(index.requireId(from), index.requireId(to));
+	}
+	
+	/**
+	 * @return true if there is a path from u to v, by node ids.
+	 */
+	public boolean reachable(int u, int v)
+	{
+		int cu = component[u];
+		int cv = component[v];
+		if(cu == cv)
+			return true;
+		if(cu < cv)
+			return false;
+		return intersect(outLabels, outOffsets[cu], outOffsets[cu + 1], inLabels, inOffsets[cv], inOffsets[cv + 1]);
+	}
+	
+	/**
+	 * @return the components of the condensation by decreasing product of their in- and out-degrees, plus one each. Ties are broken in a random order (with a
+	 *         fixed seed): on long paths, where all degrees are the same, taking the components along the path in order would label each with all those
+	 *         before it, while a random order keeps O(log n) labels per component, as the depths in a random binary search tree.
+	 */
+	protected static int[] rank(CsrGraph dag)
+	{
+		int count = dag.n();
+		int[] shuffled = new int[count];
+		Random random = new Random(SEED);
+		for(int c = 0; c < count; c++)
+		{
+			int k = random.nextInt(c + 1);
+			shuffled[c] = shuffled[k];
+			shuffled[k] = c;
+		}
+		long[] keys = new long[count];
+		for(int k = 0; k < count; k++)
+		{
+			int c = shuffled[k];
+			long score = Math.min(Integer.MAX_VALUE, (long)(dag.outDegree(c) + 1) * (dag.inDegree(c) + 1));
+			keys[k] = ((Integer.MAX_VALUE - score) << 32) | k;
+		}
+		Arrays.sort(keys);
+		int[] ret = new int[count];
+		for(int k = 0; k < count; k++)
+			ret[k] = shuffled[(int)keys[k]];
+		return ret;
+	}
+	
+	/**
+	 * Searches from the root along one form of the condensation, and stops at the components that the root already reaches, or is reached from, according to
+	 * the labels: those with a common component in <code>own</code> of the root and <code>other</code> of the component.
+	 * 
+	 * @param stamp
+	 *            : the mark of the components met by this search, twice the rank of the root, plus one backward
+	 * @param space
+	 *            : the marks of the components, which must not hold the stamp yet, followed by room for the queue
+	 * @return the components met and not pruned, the root first.
+	 */
+	protected static int[] search(int[] offsets, int[] others, int root, int stamp, Labels own, Labels other, int[] space)
+	{
+		int count = offsets.length - 1;
+		int head = count, tail = count;
+		space[root] = stamp;
+		space[tail++] = root;
+		int[] rootLabels = own.items[root];
+		int rootSize = own.sizes[root];
+		while(head < tail)
+		{
+			int c = space[head++];
+			for(int p = offsets[c]; p < offsets[c + 1]; p++)
+			{
+				int d = others[p];
+				if(space[d] == stamp)
+					continue;
+				space[d] = stamp;
+				if((rootSize > 0) && (other.sizes[d] > 0) && intersect(rootLabels, 0, rootSize, other.items[d], 0, other.sizes[d]))
+					continue;
+				space[tail++] = d;
+			}
+		}
+		return Arrays.copyOfRange(space, count, tail);
+	}
+	
+	/**
+	 * @return true if the two sorted ranges have a common value.
+	 */
+	protected static boolean intersect(int[] a, int aFrom, int aTo, int[] b, int bFrom, int bTo)
+	{
+		int i = aFrom, j = bFrom;
+		while((i < aTo) && (j < bTo))
+		{
+			if(a[i] == b[j])
+				return true;
+			if(a[i] < b[j])
+				i++;
+			else
+				j++;
+		}
+		return false;
+	}
+	
+	private static int[] flatten(Labels labels, int[] offsets)
+	{
+		int count = offsets.length - 1;
+		for(int c = 0; c < count; c++)
+			offsets[c + 1] = offsets[c] + labels.sizes[c];
+		int[] ret = new int[offsets[count]];
+		for(int c = 0; c < count; c++)
+			if(labels.sizes[c] > 0)
+				System.arraycopy(labels.items[c], 0, ret, offsets[c], labels.sizes[c]);
+		return ret;
+	}
+}
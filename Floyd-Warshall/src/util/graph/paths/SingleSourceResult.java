@@ -0,0 +1,274 @@
+package util.graph.paths;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import util.graph.CsrGraph;
+import util.graph.Edge;
+import util.graph.Node;
+
+/**
+ * The result of a single-source shortest path computation over a {@link CsrGraph}.
+ * 
+ * <p>
+ * Distances and the shortest path tree are kept in primitive arrays indexed by node id. For each node reached, other than the source, the tree gives its
+ * predecessor (the node before it on the way from the source) and the id of the edge that joins the two. With {@link Direction#BACKWARD}, the traversal follows
+ * edges against their direction, so the distance of a node is the length of a shortest path from the node to the source, and the "predecessor" of a node is
+ * the next node on that path.
+ * 
+ * <p>
+ * Paths can be read as arrays and lists, or walked lazily with a {@link PathCursor} ({@link #walk(Node)}). The predecessors lead from a node to the source,
+ * so a path in the other order is first gathered as node ids into a buffer of the cursor, which is reused by {@link #forEachPath(PathVisitor)} for all
+ * the paths from the source.
+ */
+public class SingleSourceResult
+{
+	protected CsrGraph	graph		= null;
+	protected int		source		= -1;
+	protected Direction	direction	= null;
+	protected long[]	dist		= null;
+	protected int[]		pred		= null;
+	protected int[]		predEdge	= null;
+	
+	public SingleSourceResult(CsrGraph csr, int sourceId, Direction traversal, long[] distances, int[] predecessors, int[] predecessorEdges)
+	{
+		this.graph = csr;
+		this.source = sourceId;
+		this.direction = traversal;
+		if((distances.length != csr.n()) || (predecessors.length != csr.n()) || (predecessorEdges.length != csr.n()))
+			throw new IllegalArgumentException("arrays do not match the size of the graph");
+		this.dist = distances;
+		this.pred = predecessors;
+		this.predEdge = predecessorEdges;
+	}
+	
+	public CsrGraph getGraph()
+	{
+		return graph;
+	}
+	
+	public int getSource()
+	{
+		return source;
+	}
+	
+	public Direction getDirection()
+	{
+		return direction;
+	}
+	
+	/**
+	 * @return the length of a shortest path between the source and the node, or {@link AllPairsResult#UNREACHABLE} if there is no path.
+	 */
+	public long distance(int u)
+	{
+		return dist[u];
+	}
+	
+	public long distance(Node node)
+	{
+		return dist[requireId(node)];
+	}
+	
+	public boolean isReachable(int u)
+	{
+		return dist[u] != AllPairsResult.UNREACHABLE;
+	}
+	
+	public boolean isReachable(Node node)
+	{
+		return isReachable(requireId(node));
+	}
+	
+	/**
+	 * @return the node before u in the shortest path tree, or -1 for the source and for nodes not reached.
+	 */
+	public int predecessor(int u)
+	{
+		return pred[u];
+	}
+	
+	/**
+	 * @return the id of the edge between u and its predecessor, or -1 for the source and for nodes not reached.
+	 */
+	public int predecessorEdge(int u)
+	{
+		return predEdge[u];
+	}
+	
+	/**
+	 * @return the ids of the nodes of a shortest path between the source and the node, both ends included, in the order in which the path follows its edges
+	 *         (i.e. ending at the source for {@link Direction#BACKWARD}); <code>null</code> if there is no path.
+	 */
+	public int[] pathIds(int u)
+	{
+		if(!isReachable(u))
+			return null;
+		int length = 1;
+		for(int v = u; v != source; v = pred[v])
+			length++;
+		int[] ret = new int[length];
+		boolean backward = (direction == Direction.BACKWARD);
+		int k = 0;
+		for(int v = u; k < length; v = pred[v], k++)
+			ret[backward ? k : length - 1 - k] = v;
+		return ret;
+	}
+	
+	/**
+	 * @return the nodes of a shortest path between the source and the node (see {@link #pathIds(int)}); <code>null</code> if there is no path.
+	 */
+	public List<Node> path(Node node)
+	{
+		int[] ids = pathIds(requireId(node));
+		if(ids == null)
+			return null;
+		List<Node> ret = new ArrayList<Node>(ids.length);
+		for(int v : ids)
+			ret.add(graph.getNode(v));
+		return ret;
+	}
+	
+	/**
+	 * @return the edges of a shortest path between the source and the node, in path order; an empty list for the source; <code>null</code> if there is no
+	 *         path.
+	 */
+	public List<Edge> pathEdges(Node node)
+	{
+		int u = requireId(node);
+		if(!isReachable(u))
+			return null;
+		List<Edge> ret = new ArrayList<Edge>();
+		for(int v = u; v != source; v = pred[v])
+			ret.add(graph.getEdge(predEdge[v]));
+		if(direction != Direction.BACKWARD)
+			Collections.reverse(ret);
+		return ret;
+	}
+	
+	/**
+	 * @return a cursor over the nodes of a shortest path between the source and the node, in path order (see {@link #pathIds(int)}); an empty cursor if there
+	 *         is no path.
+	 */
+	public PathCursor<Node> walk(Node node)
+	{
+		PredecessorCursor<Node> ret = new PredecessorCursor<Node>(false);
+		ret.reset(requireId(node));
+		return ret;
+	}
+	
+	/**
+	 * @return a cursor over the edges of a shortest path between the source and the node, in path order; an empty cursor for the source and if there is no
+	 *         path.
+	 */
+	public PathCursor<Edge> walkEdges(Node node)
+	{
+		PredecessorCursor<Edge> ret = new PredecessorCursor<Edge>(true);
+		ret.reset(requireId(node));
+		return ret;
+	}
+	
+	/**
+	 * Walks the shortest paths between the source and every node reached, the source included, in the order of the node ids.
+	 */
+	public void forEachPath(PathVisitor visitor)
+	{
+		PredecessorCursor<Node> cursor = new PredecessorCursor<Node>(false);
+		for(int u = 0; u < dist.length; u++)
+			if(isReachable(u))
+			{
+				cursor.reset(u);
+				visitor.visit(graph.getNode(u), dist[u], cursor);
+			}
+	}
+	
+	/**
+	 * @return the distances, by node id. Not a copy; do not modify.
+	 */
+	public long[] getDistances()
+	{
+		return dist;
+	}
+	
+	/**
+	 * @return the predecessors, by node id. Not a copy; do not modify.
+	 */
+	public int[] getPredecessors()
+	{
+		return pred;
+	}
+	
+	/**
+	 * @return the ids of the predecessor edges, by node id. Not a copy; do not modify.
+	 */
+	public int[] getPredecessorEdges()
+	{
+		return predEdge;
+	}
+	
+	protected int requireId(Node node)
+	{
+		int ret = graph.idOf(node);
+		if(ret < 0)
+			throw new IllegalArgumentException("node not in graph: " + node);
+		return ret;
+	}
+	
+	/**
+	 * Walks the path of a node. With {@link Direction#BACKWARD}, the path goes from the node to the source and the predecessors are followed as the cursor
+	 * advances; otherwise, the path is first gathered in reverse into a buffer, which grows as needed and is kept between paths.
+	 */
+	protected class PredecessorCursor<T> extends PathCursor<T>
+	{
+		int[]	buffer		= new int[16];
+		int		length		= 0;
+		int		position	= 0;
+		
+		PredecessorCursor(boolean edges)
+		{
+			super(edges);
+		}
+		
+		void reset(int u)
+		{
+			length = 0;
+			position = 0;
+			if(!isReachable(u))
+				start(-1);
+			else if(direction == Direction.BACKWARD)
+				start(u);
+			else
+			{
+				for(int v = u; v != source; v = pred[v])
+					length++;
+				length++;
+				if(buffer.length < length)
+					buffer = new int[Math.max(length, 2 * buffer.length)];
+				int k = length;
+				for(int v = u; k > 0; v = pred[v])
+					buffer[--k] = v;
+				start(buffer[0]);
+			}
+		}
+		
+		@Override
+		protected int advance(int u)
+		{
+			if(length == 0)
+				return (u == source) ? -1 : pred[u];
+			position++;
+			return (position < length) ? buffer[position] : -1;
+		}
+		
+		@Override
+		@SuppressWarnings("unchecked")
+		protected T element(int previousId, int u)
+		{
+			if(!overEdges)
+				return (T)graph.getNode(u);
+			// the edge of a step is the one kept with the node farther from the source
+			return (T)graph.getEdge(predEdge[(length == 0) ? previousId : u]);
+		}
+	}
+}
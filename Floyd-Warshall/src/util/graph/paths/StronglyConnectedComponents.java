@@ -0,0 +1,207 @@
+package util.graph.paths;
+
+import java.util.Arrays;
+
+import util.graph.CsrGraph;
+import util.graph.Graph;
+import util.graph.Node;
+
+/**
+ * The strongly connected components of a directed graph, found with Tarjan's algorithm over a {@link CsrGraph}.
+ * 
+ * <p>
+ * The depth-first search keeps its own stack of nodes and next edges instead of recursing, so that long paths do not overflow the thread stack. Components
+ * are numbered in the order in which they are completed, which is a reverse topological order of the condensation: an edge between two different components
+ * always goes from a higher number to a lower one, so a component can only reach components with lower numbers.
+ * 
+ * <p>
+ * Usage: <code>StronglyConnectedComponents scc = new StronglyConnectedComponents(graph);</code>, then <code>scc.componentOf(node)</code>.
+ */
+public class StronglyConnectedComponents
+{
+	protected CsrGraph	graph		= null;
+	/**
+	 * The component of each node, by node id.
+	 */
+	protected int[]		component	= null;
+	protected int		count		= 0;
+	
+	/**
+	 * Takes a snapshot of the graph; later changes to the graph are not seen.
+	 */
+	public StronglyConnectedComponents(Graph graph)
+	{
+		this(new CsrGraph(graph));
+	}
+	
+	public StronglyConnectedComponents(CsrGraph csr)
+	{
+		if(csr == null)
+			throw new IllegalArgumentException("the graph cannot be null");
+		this.graph = csr;
+		run();
+	}
+	
+	public CsrGraph getGraph()
+	{
+		return graph;
+	}
+	
+	/**
+	 * @return the number of components.
+	 */
+	public int count()
+	{
+		return count;
+	}
+	
+	/**
+	 * @return the component of each node, by node id. The array is shared, not copied.
+	 */
+	public int[] getComponents()
+	{
+		return component;
+	}
+	
+	public int componentOf(int u)
+	{
+		return component[u];
+	}
+	
+	public int componentOf(Node node)
+	{
+		int ret = graph.idOf(node);
+		if(ret < 0)
+			throw new IllegalArgumentException("node not in graph: " + node);
+		return component[ret];
+	}
+	
+	/**
+	 * @return the ids of the nodes of each component, by component.
+	 */
+	public int[][] members()
+	{
+		int[][] ret = new int[count][];
+		int[] sizes = new int[count];
+		for(int c : component)
+			sizes[c]++;
+		for(int c = 0; c < count; c++)
+			ret[c] = new int[sizes[c]];
+		for(int u = component.length - 1; u >= 0; u--)
+			ret[component[u]][--sizes[component[u]]] = u;
+		return ret;
+	}
+	
+	/**
+	 * @return a detached snapshot with a node per component and an edge between two components for each pair of components joined by some edge, with the
+	 *         weight of the lightest such edge; the nodes are labeled with the number of their component.
+	 */
+	public CsrGraph condensation()
+	{
+		int[] outOffsets = graph.getOutOffsets();
+		int[] outTargets = graph.getOutTargets();
+		long[] outWeights = graph.getOutWeights();
+		int[][] nodes = members();
+		// mark[d] == c once the edge from c to d is found, with its lightest weight so far in best[d]
+		int[] mark = new int[count];
+		Arrays.fill(mark, -1);
+		long[] best = new long[count];
+		int[] offsets = new int[count + 1];
+		int[] targets = new int[graph.m()];
+		long[] weights = new long[graph.m()];
+		int m = 0;
+		for(int c = 0; c < count; c++)
+		{
+			offsets[c] = m;
+			for(int u : nodes[c])
+				for(int p = outOffsets[u]; p < outOffsets[u + 1]; p++)
+				{
+					int d = component[outTargets[p]];
+					if(d == c)
+						continue;
+					if(mark[d] != c)
+					{
+						mark[d] = c;
+						best[d] = outWeights[p];
+						targets[m++] = d;
+					}
+					else
+						best[d] = Math.min(best[d], outWeights[p]);
+				}
+			Arrays.sort(targets, offsets[c], m);
+			for(int q = offsets[c]; q < m; q++)
+				weights[q] = best[targets[q]];
+		}
+		offsets[count] = m;
+		String[] labels = new String[count];
+		int[] nodeLabels = new int[count];
+		for(int c = 0; c < count; c++)
+		{
+			labels[c] = String.valueOf(c);
+			nodeLabels[c] = c;
+		}
+		int[] edgeLabels = new int[m];
+		Arrays.fill(edgeLabels, -1);
+		return new CsrGraph(labels, nodeLabels, offsets, Arrays.copyOf(targets, m), Arrays.copyOf(weights, m), edgeLabels);
+	}
+	
+	/**
+	 * Tarjan's algorithm: a node whose lowest reachable index on the stack is its own closes a component, made of the nodes above it on the stack.
+	 */
+	private void run()
+	{
+		int n = graph.n();
+		int[] offsets = graph.getOutOffsets();
+		int[] targets = graph.getOutTargets();
+		component = new int[n];
+		Arrays.fill(component, -1);
+		int[] index = new int[n];
+		Arrays.fill(index, -1);
+		int[] low = new int[n];
+		int[] stack = new int[n];
+		int[] callNode = new int[n];
+		int[] callEdge = new int[n];
+		int counter = 0, top = 0;
+		count = 0;
+		for(int s = 0; s < n; s++)
+		{
+			if(index[s] >= 0)
+				continue;
+			int depth = 0;
+			callNode[0] = s;
+			callEdge[0] = offsets[s];
+			index[s] = low[s] = counter++;
+			stack[top++] = s;
+			while(depth >= 0)
+			{
+				int v = callNode[depth];
+				if(callEdge[depth] < offsets[v + 1])
+				{
+					int w = targets[callEdge[depth]++];
+					if(index[w] < 0)
+					{
+						index[w] = low[w] = counter++;
+						stack[top++] = w;
+						callNode[++depth] = w;
+						callEdge[depth] = offsets[w];
+					}
+					else if(component[w] < 0)
+						low[v] = Math.min(low[v], index[w]); // w is still on the stack
+					continue;
+				}
+				if(low[v] == index[v])
+				{
+					int w = -1;
+					while(w != v)
+					{
+						w = stack[--top];
+						component[w] = count;
+					}
+					count++;
+				}
+				if(--depth >= 0)
+					low[callNode[depth]] = Math.min(low[callNode[depth]], low[v]);
+			}
+		}
+	}
+}
@@ -0,0 +1,243 @@
+package util.graph.paths;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+
+import util.graph.Node;
+import util.graph.NodeIndex;
+
+/**
+ * The distances between all pairs of nodes computed by {@link OutOfCoreFloydWarshall}, read from the tile files it leaves on disk.
+ * 
+ * <p>
+ * The n x n matrix is split into square tiles of a fixed side; the tile on block row bi and block column bj holds the distances from the nodes with ids in
+ * [bi * side, (bi + 1) * side) to those with ids in [bj * side, (bj + 1) * side). Each tile is a file of its own, named <code>tile-bi-bj</code>, with the
+ * side * side distances as little-endian longs, row by row; the tiles on the last block row and column are padded with
+ * {@link AllPairsResult#UNREACHABLE} past n.
+ * 
+ * <p>
+ * A lookup reads the whole tile of the cell and keeps it in memory for the next lookups, so reading the distances tile by tile is much cheaper than at
+ * random; {@link #row(int)} only reads the cells of the row. The files are read with positional reads through one direct buffer, so no file stays mapped
+ * or open between calls. An instance must not be used by several threads at once.
+ */
+public class TiledDistances implements Closeable
+{
+	/**
+	 * The largest buffer used to read or write a tile file, in bytes.
+	 */
+	static final int		IO_BUFFER_SIZE	= 1 << 20;
+	
+	protected File			directory		= null;
+	protected NodeIndex		index			= null;
+	protected int			n				= 0;
+	protected int			tileSize		= 0;
+	/**
+	 * The last tile read, and its position.
+	 */
+	protected long[]		cells			= null;
+	protected int			cachedRow		= -1;
+	protected int			cachedColumn	= -1;
+	protected ByteBuffer	buffer			= null;
+	protected boolean		closed			= false;
+	
+	TiledDistances(File tileDirectory, NodeIndex nodeIndex, int side)
+	{
+		this.directory = tileDirectory;
+		this.index = nodeIndex;
+		this.n = nodeIndex.size();
+		this.tileSize = side;
+	}
+	
+	public int size()
+	{
+		return n;
+	}
+	
+	public NodeIndex getIndex()
+	{
+		return index;
+	}
+	
+	public File getDirectory()
+	{
+		return directory;
+	}
+	
+	public int getTileSize()
+	{
+		return tileSize;
+	}
+	
+	/**
+	 * @return the distance from i to j, or {@link AllPairsResult#UNREACHABLE}.
+	 * @throws IOException
+	 *             if the tile cannot be read.
+	 */
+	public long get(int i, int j) throws IOException
+	{
+		if((i < 0) || (i >= n) || (j < 0) || (j >= n))
+			throw new IllegalArgumentException("cell (" + i + ", " + j + ") out of a " + n + " x " + n + " matrix");
+		select(i / tileSize, j / tileSize);
+		return cells[(i % tileSize) * tileSize + (j % tileSize)];
+	}
+	
+	/**
+	 * @return the distance between the two nodes, or {@link AllPairsResult#UNREACHABLE}.
+	 * @throws IOException
+	 *             if the tile cannot be read.
+	 */
+	public long getDistance(Node from, Node to) throws IOException
+	{
+		return get(index.requireId(from), index.requireId(to));
+	}
+	
+	/**
+	 * @return the distances from i to all nodes, by node id.
+	 * @throws IOException
+	 *             if a tile cannot be read.
+	 */
+	public long[] row(int i) throws IOException
+	{
+		if((i < 0) || (i >= n))
+			throw new IllegalArgumentException("row out of range: " + i);
+		checkOpen();
+		long[] ret = new long[n];
+		for(int bj = 0; bj * tileSize < n; bj++)
+			read(tileFile(directory, i / tileSize, bj), tileSize, (i % tileSize) * tileSize, ret, bj * tileSize, Math.min(tileSize, n - bj * tileSize), buffer());
+		return ret;
+	}
+	
+	/**
+	 * Drops the tile in memory and frees the buffer; the tile files are left on disk.
+	 */
+	@Override
+	public void close()
+	{
+		cells = null;
+		cachedRow = -1;
+		cachedColumn = -1;
+		if(buffer != null)
+			OffHeapMatrix.release(buffer);
+		buffer = null;
+		closed = true;
+	}
+	
+	private void select(int bi, int bj) throws IOException
+	{
+		checkOpen();
+		if((bi == cachedRow) && (bj == cachedColumn))
+			return;
+		if(cells == null)
+			cells = new long[tileSize * tileSize];
+		// a failed read leaves no tile cached
+		cachedRow = -1;
+		cachedColumn = -1;
+		read(tileFile(directory, bi, bj), tileSize, 0, cells, 0, tileSize * tileSize, buffer());
+		cachedRow = bi;
+		cachedColumn = bj;
+	}
+	
+	private ByteBuffer buffer()
+	{
+		if(buffer == null)
+			buffer = ioBuffer(tileSize);
+		return buffer;
+	}
+	
+	private void checkOpen()
+	{
+		if(closed)
+			throw new IllegalStateException("distances closed");
+	}
+	
+	static File tileFile(File tileDirectory, int bi, int bj)
+	{
+		return new File(tileDirectory, "tile-" + bi + "-" + bj);
+	}
+	
+	/**
+	 * @return a direct buffer for {@link #read(File, int, int, long[], int, int, ByteBuffer)} and {@link #write(File, int, long[], ByteBuffer)}, of a whole
+	 *         tile up to {@link #IO_BUFFER_SIZE} bytes.
+	 */
+	static ByteBuffer ioBuffer(int side)
+	{
+		return ByteBuffer.allocateDirect((int)Math.min(IO_BUFFER_SIZE, 8L * side * side)).order(ByteOrder.LITTLE_ENDIAN);
+	}
+	
+	/**
+	 * Reads count cells of a tile file, from the cell first in the order of the file, into the array from the index at, through the buffer.
+	 * 
+	 * @throws IOException
+	 *             if the file cannot be read, or does not have the size of a tile.
+	 */
+	static void read(File file, int side, int first, long[] into, int at, int count, ByteBuffer buffer) throws IOException
+	{
+		RandomAccessFile raf = new RandomAccessFile(file, "r");
+		try
+		{
+			if(raf.length() != 8L * side * side)
+				throw new IOException("truncated tile file: " + file);
+			FileChannel channel = raf.getChannel();
+			long position = 8L * first;
+			int done = 0;
+			while(done < count)
+			{
+				int chunk = Math.min(count - done, buffer.capacity() / 8);
+				buffer.clear();
+				buffer.limit(8 * chunk);
+				while(buffer.hasRemaining())
+					if(channel.read(buffer, position + buffer.position()) < 0)
+						throw new IOException("truncated tile file: " + file);
+				buffer.flip();
+				buffer.asLongBuffer().get(into, at + done, chunk);
+				done += chunk;
+				position += 8L * chunk;
+			}
+		} finally
+		{
+			raf.close();
+		}
+	}
+	
+	/**
+	 * Writes a whole tile file through the buffer, creating it if needed, and forces it to disk; the metadata of the file are forced as well if its size
+	 * changed.
+	 * 
+	 * @throws IOException
+	 *             if the file cannot be written.
+	 */
+	static void write(File file, int side, long[] from, ByteBuffer buffer) throws IOException
+	{
+		long bytes = 8L * side * side;
+		RandomAccessFile raf = new RandomAccessFile(file, "rw");
+		try
+		{
+			boolean resized = raf.length() != bytes;
+			if(resized)
+				raf.setLength(bytes);
+			FileChannel channel = raf.getChannel();
+			long position = 0;
+			int count = side * side;
+			int done = 0;
+			while(done < count)
+			{
+				int chunk = Math.min(count - done, buffer.capacity() / 8);
+				buffer.clear();
+				buffer.asLongBuffer().put(from, done, chunk);
+				buffer.limit(8 * chunk);
+				while(buffer.hasRemaining())
+					position += channel.write(buffer, position);
+				done += chunk;
+			}
+			channel.force(resized);
+		} finally
+		{
+			raf.close();
+		}
+	}
+}
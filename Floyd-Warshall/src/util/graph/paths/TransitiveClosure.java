@@ -0,0 +1,191 @@
+package util.graph.paths;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+import util.graph.CsrGraph;
+import util.graph.Graph;
+import util.logging.Unit;
+
+/**
+ * Computes which nodes of a directed {@link Graph} can reach which others, with Warshall's algorithm over bitset rows.
+ * 
+ * <p>
+ * Row i of the matrix is a bitset of <code>ceil(n / 64)</code> longs, with bit j set when i reaches j; the Warshall step for pivot k ORs row k into every row
+ * that has bit k, 64 columns per word operation. The pivots are taken 64 at a time, one word of columns: the rows of the pivots are first closed among
+ * themselves, then every other row ORs in the rows of the pivots whose bits it has in that word. Since the pivot rows are already closed over the block, a
+ * single pass over the bits of the word is enough, and the other rows are independent of each other, so they are processed in parallel on a
+ * {@link ForkJoinPool}, with one barrier per 64 pivots instead of one per pivot.
+ * 
+ * <p>
+ * The matrix takes n^2 / 8 bytes, 32 times less than an <code>int</code> matrix of distances; it must fit in a single array.
+ * 
+ * <p>
+ * Usage: <code>TransitiveClosureResult closure = new TransitiveClosure(graph).compute();</code>, then <code>closure.canReach(a, b)</code>.
+ */
+public class TransitiveClosure extends Unit
+{
+	/**
+	 * Configures the computation with the {@link Graph} to process and the thread pool. If no pool is given, a pool with the configured parallelism is created
+	 * for each computation and shut down afterwards.
+	 */
+	public static class TransitiveClosureConfig extends UnitConfigData
+	{
+		Graph			graph		= null;
+		ForkJoinPool	pool		= null;
+		int				parallelism	= Runtime.getRuntime().availableProcessors();
+		
+		public TransitiveClosureConfig(Graph thegraph)
+		{
+			super();
+			if(thegraph == null)
+				throw new IllegalArgumentException("the graph cannot be null");
+			this.graph = thegraph;
+		}
+		
+		/**
+		 * @param forkJoinPool
+		 *            : the pool to run the rows on. The pool is not shut down by the computation.
+		 * @return the config itself, for chained calls.
+		 */
+		public TransitiveClosureConfig setPool(ForkJoinPool forkJoinPool)
+		{
+			this.pool = forkJoinPool;
+			return this;
+		}
+		
+		/**
+		 * @param threads
+		 *            : the number of threads of the pool created by the computation; ignored if a pool is set with {@link #setPool(ForkJoinPool)}.
+		 * @return the config itself, for chained calls.
+		 */
+		public TransitiveClosureConfig setParallelism(int threads)
+		{
+			if(threads < 1)
+				throw new IllegalArgumentException("parallelism must be positive");
+			this.parallelism = threads;
+			return this;
+		}
+	}
+	
+	/**
+	 * ORs the rows of the pivots of the word kw into the rows in [from, to), except the pivot rows, splitting the range in halves down to the given grain.
+	 */
+	protected static class RowRangeTask extends RecursiveAction
+	{
+		private static final long	serialVersionUID	= 1L;
+		
+		long[]						bits;
+		int							words;
+		int							kw;
+		int							from;
+		int							to;
+		int							grain;
+		
+		RowRangeTask(long[] matrix, int rowWords, int pivotWord, int fromRow, int toRow, int grainSize)
+		{
+			bits = matrix;
+			words = rowWords;
+			kw = pivotWord;
+			from = fromRow;
+			to = toRow;
+			grain = grainSize;
+		}
+		
+		@Override
+		protected void compute()
+		{
+			if(to - from > grain)
+			{
+				int mid = (from + to) >>> 1;
+				invokeAll(new RowRangeTask(bits, words, kw, from, mid, grain), new RowRangeTask(bits, words, kw, mid, to, grain));
+				return;
+			}
+			for(int i = from; i < to; i++)
+				if((i >>> 6) != kw)
+					closeRow(bits, words, i, kw);
+		}
+	}
+	
+	protected TransitiveClosureConfig	config	= null;
+	
+	public TransitiveClosure(Graph graph)
+	{
+		this(new TransitiveClosureConfig(graph));
+	}
+	
+	public TransitiveClosure(TransitiveClosureConfig conf)
+	{
+		super(conf);
+		if(conf == null)
+			throw new IllegalArgumentException("null configuration");
+		this.config = conf;
+	}
+	
+	/**
+	 * @return the pairs of nodes such that the first reaches the second; every node reaches itself.
+	 */
+	public TransitiveClosureResult compute()
+	{
+		CsrGraph csr = new CsrGraph(config.graph);
+		int n = csr.n();
+		int words = (n + 63) >>> 6;
+		if((long)n * words > Integer.MAX_VALUE)
+			throw new IllegalArgumentException("graph too large for a bit matrix: " + n + " nodes");
+		long[] bits = new long[n * words];
+		int[] offsets = csr.getOutOffsets();
+		int[] targets = csr.getOutTargets();
+		for(int u = 0; u < n; u++)
+		{
+			bits[u * words + (u >>> 6)] |= 1L << u;
+			for(int p = offsets[u]; p < offsets[u + 1]; p++)
+				bits[u * words + (targets[p] >>> 6)] |= 1L << targets[p];
+		}
+		
+		ForkJoinPool pool = config.pool;
+		if(pool == null)
+			pool = new ForkJoinPool(config.parallelism);
+		try
+		{
+			int grain = Math.max(1, n / (8 * pool.getParallelism()));
+			for(int kw = 0; kw < words; kw++)
+			{
+				// the pivot rows first, in order, so that they are closed over the whole word
+				for(int k = kw << 6; k < Math.min(n, (kw + 1) << 6); k++)
+					for(int i = kw << 6; i < Math.min(n, (kw + 1) << 6); i++)
+						if((i != k) && ((bits[i * words + kw] & (1L << k)) != 0))
+							or(bits, words, i, k);
+				pool.invoke(new RowRangeTask(bits, words, kw, 0, n, grain));
+			}
+		} finally
+		{
+			if(config.pool == null)
+				pool.shutdown();
+		}
+		log.info("transitive closure done for " + n + " nodes and " + csr.m() + " edges");
+		return new TransitiveClosureResult(csr.getIndex(), bits);
+	}
+	
+	/**
+	 * ORs into row i the rows of the pivots of the word kw that i reaches. The bits of the word are read once: the pivot rows are closed over the word, so the
+	 * pivots reached through them add nothing.
+	 */
+	protected static void closeRow(long[] bits, int words, int i, int kw)
+	{
+		long pivots = bits[i * words + kw];
+		while(pivots != 0)
+		{
+			int k = (kw << 6) + Long.numberOfTrailingZeros(pivots);
+			pivots &= pivots - 1;
+			or(bits, words, i, k);
+		}
+	}
+	
+	private static void or(long[] bits, int words, int i, int k)
+	{
+		int rowI = i * words;
+		int rowK = k * words;
+		for(int w = 0; w < words; w++)
+			bits[rowI + w] |= bits[rowK + w];
+	}
+}
@@ -0,0 +1,148 @@
+package util.graph.paths;
+
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+import util.graph.Node;
+import util.graph.NodeIndex;
+
+/**
+ * The reachability between all pairs of nodes of a graph, as computed by {@link TransitiveClosure}: a bit per pair, in rows of <code>ceil(n / 64)</code>
+ * longs, by the node ids of a {@link NodeIndex}. Every node reaches itself.
+ * 
+ * <p>
+ * The result is read-only, and can be shared between threads.
+ */
+public class TransitiveClosureResult
+{
+	protected NodeIndex	index	= null;
+	protected int		n		= 0;
+	protected int		words	= 0;
+	protected long[]	bits	= null;
+	
+	public TransitiveClosureResult(NodeIndex nodeIndex, long[] matrix)
+	{
+		if(nodeIndex == null)
+			throw new IllegalArgumentException("null index");
+		this.index = nodeIndex;
+		this.n = nodeIndex.size();
+		this.words = (n + 63) >>> 6;
+		if(matrix.length != n * words)
+			throw new IllegalArgumentException("a bit matrix of " + n + " nodes has " + (n * words) + " words, not " + matrix.length);
+		this.bits = matrix;
+	}
+	
+	public NodeIndex getIndex()
+	{
+		return index;
+	}
+	
+	public int size()
+	{
+		return n;
+	}
+	
+	/**
+	 * @return the number of bytes taken by the matrix.
+	 */
+	public long memory()
+	{
+		return 8L * bits.length;
+	}
+	
+	/**
+	 * @return true if there is a path from i to j, by node ids.
+	 */
+	public boolean canReach(int i, int j)
+	{
+		if((j < 0) || (j >= n))
+			throw new IllegalArgumentException("node id out of range: " + j);
+		return (bits[row(i) + (j >>> 6)] & (1L << j)) != 0;
+	}
+	
+	/**
+	 * @return true if there is a path from the first node to the second.
+	 */
+	public boolean canReach(Node from, Node to)
+	{
+		return canReach(index.requireId(from), index.requireId(to));
+	}
+	
+	/**
+	 * @return the number of nodes that i reaches, itself included.
+	 */
+	public int countReachable(int i)
+	{
+		int ret = 0;
+		for(int w = row(i); w < row(i) + words; w++)
+			ret += Long.bitCount(bits[w]);
+		return ret;
+	}
+	
+	/**
+	 * @return the smallest id not below <code>from</code> of a node that i reaches, or -1 if there is none; <code>for(int j = nextReachable(i, 0); j >= 0; j =
+	 *         nextReachable(i, j + 1))</code> goes through the nodes that i reaches.
+	 */
+	public int nextReachable(int i, int from)
+	{
+		int base = row(i);
+		if(from >= n)
+			return -1;
+		int w = Math.max(0, from) >>> 6;
+		long word = bits[base + w] & (-1L << Math.max(0, from));
+		while(true)
+		{
+			if(word != 0)
+				return (w << 6) + Long.numberOfTrailingZeros(word);
+			if(++w == words)
+				return -1;
+			word = bits[base + w];
+		}
+	}
+	
+	/**
+	 * @return the nodes that the node reaches, itself included, in the order of their ids; the iteration reads the matrix as it goes.
+	 */
+	public Iterable<Node> reachableFrom(Node from)
+	{
+		final int i = index.requireId(from);
+		return new Iterable<Node>() {
+			@Override
+			public Iterator<Node> iterator()
+			{
+				return new Iterator<Node>() {
+					int	next	= nextReachable(i, 0);
+					
+					@Override
+					public boolean hasNext()
+					{
+						return next >= 0;
+					}
+					
+					@Override
+					public Node next()
+					{
+						if(next < 0)
+							throw new NoSuchElementException();
+						Node ret = index.get(next);
+						next = nextReachable(i, next + 1);
+						return ret;
+					}
+					
+					@Override
+					public void remove()
+					{
+						throw new UnsupportedOperationException();
+					}
+				};
+			}
+		};
+	}
+	
+	private int row(int i)
+	{
+		if((i < 0) || (i >= n))
+			throw new IllegalArgumentException("node id out of range: " + i);
+		return i * words;
+	}
+}